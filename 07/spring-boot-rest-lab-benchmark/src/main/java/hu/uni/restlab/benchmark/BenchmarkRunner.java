@@ -0,0 +1,73 @@
+package hu.uni.restlab.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point of the benchmark jar.
+ *
+ * Runs the selected benchmarks once for every thread count with the GC profiler
+ * enabled, so the reports contain throughput, latency percentiles and
+ * allocation per operation (gc.alloc.rate.norm).
+ *
+ * Usage:
+ *   java -jar target/benchmarks.jar [include-regex] [thread-counts] [sizes]
+ *
+ * Example:
+ *   java -jar target/benchmarks.jar UserServiceMixed 1,2,4,8 1000,100000
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException
+    {
+        String include = args.length > 0 ? args[0] : "hu.uni.restlab.benchmark.*";
+        List<Integer> threadCounts = args.length > 1 ? parseInts(args[1]) : defaultThreadCounts();
+        String[] sizes = args.length > 2 ? args[2].split(",") : null;
+
+        for (int threads : threadCounts) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-result-" + threads + "t.json");
+
+            if (sizes != null) {
+                options.param("size", sizes);
+            }
+
+            new Runner(options.build()).run();
+        }
+    }
+
+    // 1, 2, 4, ... up to the number of available cores.
+    private static List<Integer> defaultThreadCounts()
+    {
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        List<Integer> result = new ArrayList<>();
+        for (int t = 1; t < cores; t *= 2) {
+            result.add(t);
+        }
+        result.add(cores);
+
+        return result;
+    }
+
+    private static List<Integer> parseInts(String csv)
+    {
+        List<Integer> result = new ArrayList<>();
+        for (String part : csv.split(",")) {
+            result.add(Integer.parseInt(part.trim()));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,71 @@
+package hu.uni.restlab.benchmark;
+
+import hu.uni.restlab.model.User;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-operation benchmarks for the UserService CRUD hot paths.
+ *
+ * Every operation is measured both for throughput and for latency
+ * (SampleTime mode reports the percentiles). The thread count is
+ * chosen by the runner, see {@link BenchmarkRunner}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class UserServiceBenchmark {
+
+    /**
+     * Unique email addresses for the created users, per benchmark thread.
+     * Emails are unique in the store, so concurrent threads must not create the same address.
+     */
+    @State(Scope.Thread)
+    public static class EmailSequence {
+
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        private final int thread = THREADS.incrementAndGet();
+        private long count;
+
+        String next()
+        {
+            return "charlie-" + thread + "-" + count++ + "@example.com";
+        }
+    }
+
+    @Benchmark
+    public List<User> findAllUsers(UserStoreState state)
+    {
+        return state.userService.findAllUsers();
+    }
+
+    @Benchmark
+    public Optional<User> findUserById(UserStoreState state)
+    {
+        return state.userService.findUserById(state.randomId());
+    }
+
+    @Benchmark
+    public Optional<User> updateUser(UserStoreState state)
+    {
+        long id = state.randomId();
+        return state.userService.updateUser(id, "Updated " + id, "updated" + id + "@example.com");
+    }
+
+    // createUser and deleteUser are measured together, so the store size stays stable during the run.
+    @Benchmark
+    public void createAndDeleteUser(UserStoreState state, EmailSequence emails, Blackhole bh)
+    {
+        User created = state.userService.createUser("Charlie", emails.next());
+        bh.consume(state.userService.deleteUser(created.getId()));
+    }
+
+}
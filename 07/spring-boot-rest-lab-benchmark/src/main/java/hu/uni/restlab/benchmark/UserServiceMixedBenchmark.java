@@ -0,0 +1,40 @@
+package hu.uni.restlab.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mixed read/write workload over the UserService.
+ *
+ * Each invocation is either a lookup by id or an update of a random user,
+ * the ratio is controlled by the writePercent parameter. Running it with
+ * 1..N threads shows how the store scales across cores under contention.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class UserServiceMixedBenchmark {
+
+    // Share of write operations in percent (0 = read-only, 100 = write-only).
+    @Param({"0", "10", "50"})
+    public int writePercent;
+
+    @Benchmark
+    public void readWriteMix(UserStoreState state, Blackhole bh)
+    {
+        long id = state.randomId();
+
+        if (ThreadLocalRandom.current().nextInt(100) < writePercent) {
+            bh.consume(state.userService.updateUser(id, "Updated " + id, "updated" + id + "@example.com"));
+        } else {
+            bh.consume(state.userService.findUserById(id));
+        }
+    }
+
+}
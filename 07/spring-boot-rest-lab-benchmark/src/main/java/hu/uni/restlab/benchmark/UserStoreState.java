@@ -0,0 +1,64 @@
+package hu.uni.restlab.benchmark;
+
+import hu.uni.restlab.model.User;
+import hu.uni.restlab.persistence.UserStorePersistence;
+import hu.uni.restlab.service.UserService;
+import hu.uni.restlab.service.UserStore;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Shared benchmark state holding a pre-populated UserService.
+ *
+ * The store is filled once per trial with the requested number of users,
+ * so every benchmark method measures a store of a known, stable size.
+ */
+@State(Scope.Benchmark)
+public class UserStoreState {
+
+    // Number of users in the store (1k, 100k and 1M by default).
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    // Storage engine of the store: object-per-user hash map or the compact columnar store.
+    @Param({"map", "compact"})
+    public String engine;
+
+    public UserService userService;
+
+    // Highest id created during setup; ids 1..maxId are all present.
+    public long maxId;
+
+    @Setup(Level.Trial)
+    public void populate()
+    {
+        // The constructor already seeds the demo users, fill the rest up to the requested size.
+        userService = new UserService(UserStore.create(engine), UserStorePersistence.disabled());
+
+        int existing = userService.findAllUsers().size();
+        for (int i = existing; i < size; i++) {
+            userService.createUser("User " + i, "user" + i + "@example.com");
+        }
+
+        maxId = 0;
+        for (User user : userService.findAllUsers()) {
+            maxId = Math.max(maxId, user.getId());
+        }
+    }
+
+    /**
+     * Picks a random id of a user that was created during setup.
+     *
+     * @return an id between 1 and maxId (inclusive)
+     */
+    public long randomId()
+    {
+        return ThreadLocalRandom.current().nextLong(1, maxId + 1);
+    }
+
+}
@@ -0,0 +1,53 @@
+package hu.uni.restlab.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Binary encodings of the REST API, chosen by the Accept (response) and the
+ * Content-Type (request body) header:
+ * <ul>
+ *   <li>application/cbor: CBOR, the binary form of JSON (RFC 8949)</li>
+ *   <li>application/x-jackson-smile: Smile, Jackson's binary JSON</li>
+ *   <li>application/x-protobuf: protobuf, see UserProtobufHttpMessageConverter</li>
+ * </ul>
+ * JSON remains the default: the binary converters come after the JSON converter,
+ * so a client that accepts anything (or sends no Accept header) still gets JSON.
+ * Spring Boot puts the CBOR and Smile beans in place of the default ones of Spring MVC.
+ *
+ * CBOR and Smile use the same Jackson settings as JSON (the ObjectMapper builder of
+ * Spring Boot), only with a binary factory, so the field names and the handling of
+ * nulls and dates do not depend on the format.
+ */
+@Configuration
+public class ContentNegotiationConfig implements WebMvcConfigurer {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder)
+    {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder)
+    {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    // Spring Boot would put a converter bean of its own type first; added here, it is the last one.
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters)
+    {
+        converters.add(new UserProtobufHttpMessageConverter());
+    }
+
+}
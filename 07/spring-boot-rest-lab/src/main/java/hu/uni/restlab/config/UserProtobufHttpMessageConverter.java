@@ -0,0 +1,171 @@
+package hu.uni.restlab.config;
+
+import hu.uni.restlab.controller.UserCreateRequest;
+import hu.uni.restlab.controller.UserResponse;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * Protobuf encoding of the user DTOs (Content-Type: application/x-protobuf).
+ *
+ * The records are encoded by hand in the protobuf wire format, so no generated
+ * classes are needed. The messages are (proto3):
+ * <pre>
+ * message UserResponse      { int64 id = 1; string name = 2; string email = 3; }
+ * message UserList          { repeated UserResponse users = 1; }
+ * message UserCreateRequest { string name = 1; string email = 2; }
+ * </pre>
+ * UserResponse is wire compatible with UserRecord of the gRPC API (users.proto),
+ * which has the version as field 4 in addition.
+ * A user is written as UserResponse, a list of users as UserList; request bodies
+ * are read as UserCreateRequest. Empty strings are not written (proto3 defaults),
+ * and a missing string is read as null, like a missing JSON field.
+ */
+public class UserProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    /**
+     * The media type of the protobuf encoding.
+     */
+    public static final MediaType PROTOBUF = new MediaType("application", "x-protobuf");
+
+    private static final int USERS_FIELD = 1;
+
+    public UserProtobufHttpMessageConverter() {
+        super(PROTOBUF);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz)
+    {
+        return clazz == UserResponse.class || clazz == UserCreateRequest.class;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType)
+    {
+        return clazz == UserCreateRequest.class && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType)
+    {
+        return type == UserCreateRequest.class && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType)
+    {
+        return clazz == UserResponse.class && canWrite(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType)
+    {
+        return (clazz == UserResponse.class || isUserList(type)) && canWrite(mediaType);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException
+    {
+        CodedInputStream in = CodedInputStream.newInstance(inputMessage.getBody());
+        String name = null;
+        String email = null;
+
+        try {
+            for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+                switch (WireFormat.getTagFieldNumber(tag)) {
+                    case 1 -> name = in.readStringRequireUtf8();
+                    case 2 -> email = in.readStringRequireUtf8();
+                    default -> in.skipField(tag);
+                }
+            }
+        } catch (InvalidProtocolBufferException e) {
+            throw new HttpMessageNotReadableException("Invalid protobuf message: " + e.getMessage(), e, inputMessage);
+        }
+        return new UserCreateRequest(name, email);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException
+    {
+        return readInternal(UserCreateRequest.class, inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException
+    {
+        CodedOutputStream out = CodedOutputStream.newInstance(outputMessage.getBody());
+        if (value instanceof UserResponse user) {
+            writeFields(out, user);
+        } else {
+            for (Object user : (Collection<?>) value) {
+                writeListItem(out, (UserResponse) user);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes one element of a UserList: the users of a list are simply written one after the other,
+     * so a list can also be streamed without knowing its length.
+     *
+     * @param out the protobuf output
+     * @param user the user to write
+     */
+    public static void writeListItem(CodedOutputStream out, UserResponse user) throws IOException
+    {
+        out.writeTag(USERS_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(fieldsSize(user));
+        writeFields(out, user);
+    }
+
+    private static void writeFields(CodedOutputStream out, UserResponse user) throws IOException
+    {
+        if (user.id() != 0) {
+            out.writeInt64(1, user.id());
+        }
+        if (user.name() != null && !user.name().isEmpty()) {
+            out.writeString(2, user.name());
+        }
+        if (user.email() != null && !user.email().isEmpty()) {
+            out.writeString(3, user.email());
+        }
+    }
+
+    private static int fieldsSize(UserResponse user)
+    {
+        int size = 0;
+        if (user.id() != 0) {
+            size += CodedOutputStream.computeInt64Size(1, user.id());
+        }
+        if (user.name() != null && !user.name().isEmpty()) {
+            size += CodedOutputStream.computeStringSize(2, user.name());
+        }
+        if (user.email() != null && !user.email().isEmpty()) {
+            size += CodedOutputStream.computeStringSize(3, user.email());
+        }
+        return size;
+    }
+
+    // A List<UserResponse> (or any other collection of users).
+    private static boolean isUserList(Type type)
+    {
+        return type instanceof ParameterizedType parameterized
+                && parameterized.getRawType() instanceof Class<?> raw
+                && Collection.class.isAssignableFrom(raw)
+                && parameterized.getActualTypeArguments()[0] == UserResponse.class;
+    }
+
+}
@@ -1,11 +1,16 @@
 package hu.uni.restlab.controller;
 
+import hu.uni.restlab.service.DuplicateEmailException;
+import hu.uni.restlab.service.SyncExpiredException;
+import hu.uni.restlab.service.VersionConflictException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -41,6 +46,59 @@ public class ApiExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
     }
 
+    // Handle invalid request parameters (e.g. unknown sort order, malformed cursor)
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleIllegalArgument(IllegalArgumentException ex)
+    {
+        Map<String, Object> body = new LinkedHashMap<>();
+
+        body.put("error", "Bad request");
+        body.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
+    }
+
+    // Handle optimistic concurrency conflicts (If-Match names an outdated version)
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<Map<String, Object>> handleVersionConflict(VersionConflictException ex, WebRequest request)
+    {
+        Map<String, Object> body = new LinkedHashMap<>();
+
+        body.put("error", "Precondition failed");
+        body.put("message", ex.getMessage());
+        body.put("currentVersion", ex.getCurrentVersion());
+
+        // Return the current ETag, so the client can reload and retry.
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .eTag(UserETags.record(ex.getCurrentVersion(), UserController.responseFormat(request.getHeader(HttpHeaders.ACCEPT))))
+                .body(body);
+    }
+
+    // Handle unique constraint violations (the email belongs to another user)
+    @ExceptionHandler(DuplicateEmailException.class)
+    public ResponseEntity<Map<String, Object>> handleDuplicateEmail(DuplicateEmailException ex)
+    {
+        Map<String, Object> body = new LinkedHashMap<>();
+
+        body.put("error", "Conflict");
+        body.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+    }
+
+    // Handle delta syncs from a version whose tombstones are already compacted
+    @ExceptionHandler(SyncExpiredException.class)
+    public ResponseEntity<Map<String, Object>> handleSyncExpired(SyncExpiredException ex)
+    {
+        Map<String, Object> body = new LinkedHashMap<>();
+
+        body.put("error", "Gone");
+        body.put("message", ex.getMessage());
+
+        // The client starts over with a full download (since=0).
+        return ResponseEntity.status(HttpStatus.GONE).body(body);
+    }
+
     // Handle general Exception
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleGeneralException(Exception ex)
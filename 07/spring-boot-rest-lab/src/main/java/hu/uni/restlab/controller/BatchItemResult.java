@@ -0,0 +1,43 @@
+package hu.uni.restlab.controller;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+/**
+ * Data record representing the result of one batch operation.
+ *
+ * Every item carries its own HTTP-like status code, so a failing item
+ * does not fail the whole batch.
+ *
+ * @param index the position of the operation in the request
+ * @param op the operation name
+ * @param status the status code of this item (200, 201, 204, 400, 404 or 409)
+ * @param user the resulting user (get, create, update)
+ * @param error the error message if the item failed
+ * @param fields the validation errors per field if the item was invalid
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchItemResult(
+        int index,
+        String op,
+        int status,
+        UserResponse user,
+        String error,
+        Map<String, String> fields
+) {
+    /**
+     * Result of a successful operation.
+     */
+    static BatchItemResult ok(int index, String op, int status, UserResponse user) {
+        return new BatchItemResult(index, op, status, user, null, null);
+    }
+
+    /**
+     * Result of a failed operation.
+     */
+    static BatchItemResult failed(int index, String op, int status, String error, Map<String, String> fields) {
+        return new BatchItemResult(index, op, status, null, error, fields);
+    }
+
+}
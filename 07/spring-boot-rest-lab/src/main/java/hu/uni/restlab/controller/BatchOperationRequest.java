@@ -0,0 +1,20 @@
+package hu.uni.restlab.controller;
+
+/**
+ * Data record representing one operation of a batch request.
+ *
+ * Supported operations:
+ * - get:    requires id
+ * - create: requires user
+ * - update: requires id and user
+ * - delete: requires id
+ *
+ * @param op the operation name (get, create, update or delete)
+ * @param id the id of the target user (get, update, delete)
+ * @param user the user data (create, update)
+ */
+public record BatchOperationRequest(
+        String op,
+        Long id,
+        UserCreateRequest user
+) { }
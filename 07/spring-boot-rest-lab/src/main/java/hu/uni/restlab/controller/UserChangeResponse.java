@@ -0,0 +1,14 @@
+package hu.uni.restlab.controller;
+
+/**
+ * Data record representing a changed user in a delta sync response.
+ *
+ * For a deleted user (a tombstone) only the id and the last version are set.
+ */
+public record UserChangeResponse(
+        long id,
+        String name,
+        String email,
+        long version,
+        boolean deleted
+) { }
@@ -1,14 +1,42 @@
 package hu.uni.restlab.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.CodedOutputStream;
+import hu.uni.restlab.config.UserProtobufHttpMessageConverter;
 import hu.uni.restlab.model.User;
+import hu.uni.restlab.service.DuplicateEmailException;
+import hu.uni.restlab.service.UserChange;
+import hu.uni.restlab.service.UserChangePage;
+import hu.uni.restlab.service.UserPage;
+import hu.uni.restlab.service.UserQuery;
+import hu.uni.restlab.service.UserSearchPage;
 import hu.uni.restlab.service.UserService;
+import hu.uni.restlab.service.UserSort;
+import hu.uni.restlab.service.UserStoreStats;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * REST controller for managing users.
@@ -20,72 +48,313 @@ import java.util.List;
 @RequestMapping("/api/v1/users")
 public class UserController {
 
+    // Upper bound of the ?limit= parameter.
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    // In streaming mode the response is flushed after every this many users.
+    private static final int STREAM_FLUSH_SIZE = 512;
+
+    private static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+    // The encodings of the streamed list, in order of preference.
+    private static final List<MediaType> STREAM_FORMATS =
+            List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, SMILE, UserProtobufHttpMessageConverter.PROTOBUF);
+
+    // Upper bound of the ?limit= parameter of the autocomplete endpoint.
+    private static final int MAX_SUGGEST_SIZE = 100;
+
+    // Upper bound of the ?offset= parameter of the search endpoint (deep pages keep a bigger heap of results).
+    private static final int MAX_SEARCH_OFFSET = 10000;
+
+    // Maximum number of operations in one batch request.
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final MappingJackson2CborHttpMessageConverter cborConverter;
+    private final MappingJackson2SmileHttpMessageConverter smileConverter;
+    private final Validator validator;
 
     /**
-     * Constructor injection of UserService.
+     * Constructor injection of UserService, the Jackson ObjectMappers and the bean Validator.
      *
      * @param userService the user service handling business logic
+     * @param objectMapper the ObjectMapper used for streaming serialization
+     * @param cborConverter the CBOR converter, its ObjectMapper is used for streaming CBOR
+     * @param smileConverter the Smile converter, its ObjectMapper is used for streaming Smile
+     * @param validator the validator used for the items of batch requests
      */
-    public UserController(UserService userService) {
+    public UserController(UserService userService,
+                          ObjectMapper objectMapper,
+                          MappingJackson2CborHttpMessageConverter cborConverter,
+                          MappingJackson2SmileHttpMessageConverter smileConverter,
+                          Validator validator) {
         this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.cborConverter = cborConverter;
+        this.smileConverter = smileConverter;
+        this.validator = validator;
     }
 
-    // GET /api/v1/users
+    // GET /api/v1/users?sort=id|name|email&limit=&after=
+    // GET /api/v1/users?nameContains=&emailDomain=&idFrom=&idTo=&limit=&after=
     @GetMapping
-    public List<UserResponse> listUsers()
+    public ResponseEntity<List<UserResponse>> listUsers(
+            @RequestParam(name = "sort", defaultValue = "id") String sort,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "after", required = false) String after,
+            @RequestParam(name = "nameContains", required = false) String nameContains,
+            @RequestParam(name = "emailDomain", required = false) String emailDomain,
+            @RequestParam(name = "idFrom", required = false) Long idFrom,
+            @RequestParam(name = "idTo", required = false) Long idTo,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+            WebRequest request)
     {
+        if (limit != null && (limit < 1 || limit > MAX_PAGE_SIZE)) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        UserSort order = UserSort.fromParam(sort);
+        UserQuery query = new UserQuery(nameContains, emailDomain, idFrom, idTo);
+
+        // Without a limit the whole list is returned (in the requested order),
+        // but a filtered result is always paged (it is scanned from the store, in id order).
+        if (!query.isEmpty() && order != UserSort.ID) {
+            throw new IllegalArgumentException("Filtered results can only be sorted by id");
+        }
+        int pageSize = limit != null ? limit : query.isEmpty() ? Integer.MAX_VALUE : MAX_PAGE_SIZE;
+
+        // Answer If-None-Match / If-Modified-Since before touching the store:
+        // an unchanged collection is answered with 304 and nothing is serialized.
+        String etag = UserETags.collection(userService.getModificationCount(), responseFormat(accept),
+                order.name(), limit, after, query);
+        long lastModified = userService.getLastModified();
+        if (request.checkNotModified(etag, lastModified)) {
+            return null;
+        }
+
         // Delegate to service and convert entities to response DTOs.
-        return userService.findAllUsers().stream()
+        UserPage page = query.isEmpty()
+                ? userService.findUsers(order, after, pageSize)
+                : userService.queryUsers(query, after, pageSize);
+        List<UserResponse> body = page.users().stream()
                 .map(user -> userService.toResponse(user))
                 .toList();
+
+        // If there are more users, point the client to the next page with a Link header.
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .lastModified(lastModified)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT);
+        if (page.nextCursor() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", page.nextCursor())
+                    .build()
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+
+        return response.body(body);
+    }
+
+    // GET /api/v1/users?stream=true&sort=id|name|email
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamUsers(@RequestParam(name = "sort", defaultValue = "id") String sort,
+                                                             @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+                                                             WebRequest request)
+    {
+        // Parse the sort order before the response is committed, so errors still produce a 400.
+        UserSort order = UserSort.fromParam(sort);
+        MediaType format = responseFormat(accept);
+
+        // Conditional GET: an unchanged collection is not streamed again.
+        String etag = UserETags.collection(userService.getModificationCount(), format, order.name(), "stream");
+        long lastModified = userService.getLastModified();
+        if (request.checkNotModified(etag, lastModified)) {
+            return null;
+        }
+
+        // Write the users straight from the store, in the encoding the client accepts.
+        // No list is built in memory, so memory use does not depend on the store size.
+        StreamingResponseBody body = format.equals(UserProtobufHttpMessageConverter.PROTOBUF)
+                ? out -> writeProtobufStream(userService.streamUsers(order), out)
+                : out -> writeJacksonStream(userService.streamUsers(order), mapperFor(format), out);
+
+        return ResponseEntity.ok()
+                .contentType(format)
+                .eTag(etag)
+                .lastModified(lastModified)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(body);
+    }
+
+    // GET /api/v1/users?email=
+    @GetMapping(params = "email")
+    public List<UserResponse> findUsersByEmail(@RequestParam("email") String email)
+    {
+        // O(1) lookup in the unique email index; the result has at most one user.
+        return userService.findUserByEmail(email)
+                .map(user -> List.of(userService.toResponse(user)))
+                .orElse(List.of());
+    }
+
+    // GET /api/v1/users/suggest?prefix=&limit=
+    @GetMapping("/suggest")
+    public List<UserResponse> suggestUsers(@RequestParam(name = "prefix", defaultValue = "") String prefix,
+                                           @RequestParam(name = "limit", defaultValue = "10") int limit)
+    {
+        if (prefix.isBlank()) {
+            throw new IllegalArgumentException("prefix must not be blank");
+        }
+        if (limit < 1 || limit > MAX_SUGGEST_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_SUGGEST_SIZE);
+        }
+
+        // Top-k names with the prefix, read straight from the sorted name index.
+        return userService.suggestUsers(prefix, limit).stream()
+                .map(user -> userService.toResponse(user))
+                .toList();
+    }
+
+    // GET /api/v1/users/search?q=&offset=&limit=
+    @GetMapping("/search")
+    public ResponseEntity<List<UserResponse>> searchUsers(@RequestParam(name = "q", defaultValue = "") String query,
+                                                          @RequestParam(name = "offset", defaultValue = "0") int offset,
+                                                          @RequestParam(name = "limit", defaultValue = "20") int limit)
+    {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (offset < 0 || offset > MAX_SEARCH_OFFSET) {
+            throw new IllegalArgumentException("offset must be between 0 and " + MAX_SEARCH_OFFSET);
+        }
+
+        // Ranked substring search in the trigram index.
+        UserSearchPage page = userService.searchUsers(query, offset, limit);
+        List<UserResponse> body = page.users().stream()
+                .map(user -> userService.toResponse(user))
+                .toList();
+
+        // Report the number of matches, and link the next page if there are more.
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header("X-Total-Count", Long.toString(page.total()));
+        if (offset + body.size() < page.total() && offset + limit <= MAX_SEARCH_OFFSET) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("offset", offset + limit)
+                    .build()
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+
+        return response.body(body);
+    }
+
+    // GET /api/v1/users/changes?since=&limit=
+    @GetMapping("/changes")
+    public ResponseEntity<UserSyncResponse> findChanges(@RequestParam(name = "since", defaultValue = "0") long since,
+                                                        @RequestParam(name = "limit", defaultValue = "1000") int limit)
+    {
+        if (since < 0) {
+            throw new IllegalArgumentException("since must not be negative");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        // Only the users created, updated or deleted after the client's sync version (0: everything).
+        // A version older than the compacted tombstones is answered with 410 Gone by the exception handler.
+        UserChangePage page = userService.findChanges(since, limit);
+        List<UserChangeResponse> changes = page.changes().stream()
+                .map(change -> toChangeResponse(change))
+                .toList();
+
+        // If the limit was reached, continue from the returned version.
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(CacheControl.noStore());
+        if (page.hasMore()) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("since", page.version())
+                    .build()
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+
+        return response.body(new UserSyncResponse(page.version(), page.hasMore(), changes));
+    }
+
+    // GET /api/v1/users/stats
+    @GetMapping("/stats")
+    public ResponseEntity<UserStoreStats> getStoreStats()
+    {
+        // Memory footprint of the store: engine name, user count, estimated heap bytes per user.
+        return ResponseEntity.ok(userService.getStoreStats());
     }
 
     // GET /api/v1/users/{id}
     @GetMapping("/{id}")
-    public ResponseEntity<UserResponse> getUser(@PathVariable("id") long id)
+    public ResponseEntity<UserResponse> getUser(@PathVariable("id") long id,
+                                                @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+                                                WebRequest request)
     {
         // Delegate to service to fetch the user by id.
-        // If user is found, convert to response DTO and return 200 OK.
-        // if the user does not exist, return 404 Not Found.
-        return userService.findUserById(id)
-                .map(user -> userService.toResponse(user))
-                .map(response -> ResponseEntity.ok(response))
-                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+        // If the user does not exist, return 404 Not Found.
+        Optional<User> user = userService.findUserById(id);
+        if (user.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        // If the client already has this version, return 304 Not Modified without a body.
+        String etag = UserETags.record(user.get().getVersion(), responseFormat(accept));
+        if (request.checkNotModified(etag, user.get().getLastModified())) {
+            return null;
+        }
+
+        // Otherwise convert to response DTO and return 200 OK.
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .lastModified(user.get().getLastModified())
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(userService.toResponse(user.get()));
     }
 
     // POST /api/v1/users
     @PostMapping
-    public ResponseEntity<UserResponse> createUser(@Valid @RequestBody UserCreateRequest req)
+    public ResponseEntity<UserResponse> createUser(@Valid @RequestBody UserCreateRequest req,
+                                                   @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept)
     {
         // Delegate to service to create the user.
         User created = userService.createUser(req.name(), req.email());
         UserResponse response = userService.toResponse(created);
 
-        // Respond with 201 Created and a Location header.
+        // Respond with 201 Created, a Location header and the ETag of the first version.
         URI location = URI.create("/api/v1/users/" + created.getId());
-        return ResponseEntity.created(location).body(response);
+        return ResponseEntity.created(location).eTag(UserETags.record(created.getVersion(), responseFormat(accept))).body(response);
     }
 
-    // PUT /api/v1/users/{id}
+    // PUT /api/v1/users/{id}  (optional If-Match: "<version>")
     @PutMapping("/{id}")
-    public ResponseEntity<UserResponse> updateUser(@PathVariable("id") long id, @Valid @RequestBody UserCreateRequest req)
+    public ResponseEntity<UserResponse> updateUser(@PathVariable("id") long id,
+                                                   @Valid @RequestBody UserCreateRequest req,
+                                                   @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                   @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept)
     {
         // Delegate to service to update the user.
-        // If user is found and updated, convert to response DTO and return 200 OK.
+        // If user is found and updated, convert to response DTO and return 200 OK with the new ETag.
         // If the user does not exist, return 404 Not Found.
-        return userService.updateUser(id, req.name(), req.email())
-                .map(user -> userService.toResponse(user))
-                .map(response -> ResponseEntity.ok(response))
+        // If If-Match names another version, the service throws and the client gets 412 Precondition Failed.
+        return userService.updateUser(id, req.name(), req.email(), parseIfMatch(id, ifMatch))
+                .map(user -> ResponseEntity.ok().eTag(UserETags.record(user.getVersion(), responseFormat(accept))).body(userService.toResponse(user)))
                 .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
     }
 
-    // DELETE /api/v1/users/{id}
+    // DELETE /api/v1/users/{id}  (optional If-Match: "<version>")
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteUser(@PathVariable("id") long id)
+    public ResponseEntity<Void> deleteUser(@PathVariable("id") long id,
+                                           @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch)
     {
-        // Delegate to service to delete the user.
-        boolean deleted = userService.deleteUser(id);
+        // Delegate to service to delete the user (412 on version mismatch, see updateUser).
+        boolean deleted = userService.deleteUser(id, parseIfMatch(id, ifMatch));
 
         // Return 404 if the user did not exist, otherwise 204 No Content.
         if (!deleted) {
@@ -96,4 +365,205 @@ public class UserController {
         return ResponseEntity.noContent().build();
     }
 
+    // POST /api/v1/users/batch
+    @PostMapping("/batch")
+    public List<BatchItemResult> batch(@RequestBody List<BatchOperationRequest> operations)
+    {
+        if (operations.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("A batch may contain at most " + MAX_BATCH_SIZE + " operations");
+        }
+        for (int i = 0; i < operations.size(); i++) {
+            if (operations.get(i) == null) {
+                throw new IllegalArgumentException("Batch operation " + i + " is null");
+            }
+        }
+
+        // First pass: validate every item. Invalid items get their error result right away.
+        BatchItemResult[] results = new BatchItemResult[operations.size()];
+        int creates = 0;
+        for (int i = 0; i < operations.size(); i++) {
+            results[i] = validateBatchItem(i, operations.get(i));
+            if (results[i] == null && "create".equals(opName(operations.get(i)))) {
+                creates++;
+            }
+        }
+
+        // Reserve the ids of all creates in one block instead of one increment per user.
+        long nextId = creates > 0 ? userService.reserveIds(creates) : 0;
+
+        // Second pass: execute the valid items in request order,
+        // so e.g. a get after an update in the same batch sees the new data.
+        for (int i = 0; i < operations.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+
+            BatchOperationRequest item = operations.get(i);
+            long reservedId = "create".equals(opName(item)) ? nextId++ : 0;
+            try {
+                results[i] = executeBatchItem(i, item, reservedId);
+            } catch (DuplicateEmailException e) {
+                results[i] = BatchItemResult.failed(i, opName(item), 409, e.getMessage(), null);
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    // The version an If-Match header expects: the current one if any of its ETags names it. The service
+    // still compares it with the record it replaces, so a change in between is answered with 412.
+    private Long parseIfMatch(long id, String ifMatch)
+    {
+        return UserETags.parseIfMatch(ifMatch, () -> userService.findUserById(id).map(User::getVersion).orElse(0L));
+    }
+
+    // The encoding of a response (and of a streamed list): the first of JSON, CBOR, Smile and protobuf
+    // the client accepts (by quality and specificity), JSON if it accepts none of them.
+    static MediaType responseFormat(String accept)
+    {
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+            MimeTypeUtils.sortBySpecificity(accepted);
+        } catch (InvalidMediaTypeException | InvalidMimeTypeException e) {
+            // Unparsable, or too many media types to sort.
+            return MediaType.APPLICATION_JSON;
+        }
+        for (MediaType type : accepted) {
+            for (MediaType format : STREAM_FORMATS) {
+                if (type.includes(format)) {
+                    return format;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    private ObjectMapper mapperFor(MediaType format)
+    {
+        if (format.equals(MediaType.APPLICATION_CBOR)) {
+            return cborConverter.getObjectMapper();
+        }
+        if (format.equals(SMILE)) {
+            return smileConverter.getObjectMapper();
+        }
+        return objectMapper;
+    }
+
+    // Writes the users as an array with a Jackson generator: JSON, or the same structure in CBOR or Smile.
+    private void writeJacksonStream(Stream<User> users, ObjectMapper mapper, OutputStream out) throws IOException
+    {
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            // The servlet container owns the output stream, do not close it.
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+
+            int count = 0;
+            Iterator<User> it = users.iterator();
+            while (it.hasNext()) {
+                generator.writeObject(userService.toResponse(it.next()));
+
+                // Flush in chunks, so the client receives data while the rest is still being written.
+                if (++count % STREAM_FLUSH_SIZE == 0) {
+                    generator.flush();
+                }
+            }
+
+            generator.writeEndArray();
+        }
+    }
+
+    // Writes the users as a protobuf UserList, one element after the other.
+    private void writeProtobufStream(Stream<User> users, OutputStream out) throws IOException
+    {
+        CodedOutputStream protobuf = CodedOutputStream.newInstance(out);
+
+        int count = 0;
+        Iterator<User> it = users.iterator();
+        while (it.hasNext()) {
+            UserProtobufHttpMessageConverter.writeListItem(protobuf, userService.toResponse(it.next()));
+
+            if (++count % STREAM_FLUSH_SIZE == 0) {
+                protobuf.flush();
+                out.flush();
+            }
+        }
+        protobuf.flush();
+    }
+
+    // A changed user of a delta sync; a deleted one has only its id and last version.
+    private static UserChangeResponse toChangeResponse(UserChange change)
+    {
+        User user = change.user();
+        return change.deleted()
+                ? new UserChangeResponse(change.id(), null, null, change.version(), true)
+                : new UserChangeResponse(user.getId(), user.getName(), user.getEmail(), change.version(), false);
+    }
+
+    // Returns the lower-case operation name of a batch item, or an empty string if missing.
+    private static String opName(BatchOperationRequest item)
+    {
+        return item.op() == null ? "" : item.op().toLowerCase(Locale.ROOT);
+    }
+
+    // Checks a batch item; returns an error result if it is invalid, null if it can be executed.
+    private BatchItemResult validateBatchItem(int index, BatchOperationRequest item)
+    {
+        String op = opName(item);
+
+        if (!Set.of("get", "create", "update", "delete").contains(op)) {
+            return BatchItemResult.failed(index, item.op(), 400, "Unknown operation (use get, create, update or delete)", null);
+        }
+        if (!op.equals("create") && item.id() == null) {
+            return BatchItemResult.failed(index, op, 400, "Missing id", null);
+        }
+        if (op.equals("create") || op.equals("update")) {
+            if (item.user() == null) {
+                return BatchItemResult.failed(index, op, 400, "Missing user", null);
+            }
+
+            // Apply the same bean validation rules as the single-user endpoints.
+            Set<ConstraintViolation<UserCreateRequest>> violations = validator.validate(item.user());
+            if (!violations.isEmpty()) {
+                Map<String, String> fields = new LinkedHashMap<>();
+                for (ConstraintViolation<UserCreateRequest> violation : violations) {
+                    fields.put(violation.getPropertyPath().toString(), violation.getMessage());
+                }
+                return BatchItemResult.failed(index, op, 400, "Validation failed", fields);
+            }
+        }
+
+        return null;
+    }
+
+    // Executes a validated batch item. reservedId is only used by create.
+    private BatchItemResult executeBatchItem(int index, BatchOperationRequest item, long reservedId)
+    {
+        String op = opName(item);
+
+        switch (op) {
+            case "create": {
+                User created = userService.createUser(reservedId, item.user().name(), item.user().email());
+                return BatchItemResult.ok(index, op, 201, userService.toResponse(created));
+            }
+            case "get": {
+                Optional<User> user = userService.findUserById(item.id());
+                return user.isPresent()
+                        ? BatchItemResult.ok(index, op, 200, userService.toResponse(user.get()))
+                        : BatchItemResult.failed(index, op, 404, "User not found", null);
+            }
+            case "update": {
+                Optional<User> user = userService.updateUser(item.id(), item.user().name(), item.user().email());
+                return user.isPresent()
+                        ? BatchItemResult.ok(index, op, 200, userService.toResponse(user.get()))
+                        : BatchItemResult.failed(index, op, 404, "User not found", null);
+            }
+            default: {
+                return userService.deleteUser(item.id())
+                        ? BatchItemResult.ok(index, op, 204, null)
+                        : BatchItemResult.failed(index, op, 404, "User not found", null);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,101 @@
+package hu.uni.restlab.controller;
+
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * The ETags of the user API.
+ *
+ * Every ETag starts with the epoch of the running process (its start time), because the
+ * record versions and the modification count start again from the same values after
+ * a restart when the store is not persisted. An ETag of an earlier run therefore never
+ * matches: If-None-Match gets the full response, If-Match gets 412.
+ *
+ * The record and collection ETags also name the encoding of the body (json, cbor, ...):
+ * a strong ETag promises byte-identical content, which a JSON and a CBOR response are not.
+ */
+final class UserETags {
+
+    // Start of this process, base 36.
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private UserETags() {
+    }
+
+    /**
+     * Strong ETag of a single user: the epoch, the version of the record and the encoding,
+     * e.g. "m2x8k1-3-json".
+     */
+    static String record(long version, MediaType format)
+    {
+        return "\"" + EPOCH + "-" + version + "-" + format.getSubtype() + "\"";
+    }
+
+    /**
+     * Strong ETag of a collection view: the epoch, the global modification count and the query
+     * parameters and encoding, because different pages, orders and encodings of the same state
+     * are different representations.
+     */
+    static String collection(long modificationCount, MediaType format, Object... params)
+    {
+        return "\"" + EPOCH + "-" + modificationCount + "-" + format.getSubtype() + "-"
+                + Integer.toHexString(Arrays.hashCode(params)) + "\"";
+    }
+
+    /**
+     * Parses an If-Match header into the expected record version.
+     *
+     * The header is a list of entity tags and matches if any of them is a strong ETag of the
+     * current version. Weak ETags never match in If-Match and are skipped, and so are tags of an
+     * earlier run or of another server. The encoding part is optional and ignored: the version
+     * is the same whichever encoding the client read it in.
+     *
+     * @param currentVersion supplies the current version of the record (0 if it does not exist)
+     * @return the current version if a tag names it, 0 if none does (no record has version 0, so
+     *         the update gets 412), or null if there is no condition (header missing or "*")
+     * @throws IllegalArgumentException if a member of the list is not an entity tag
+     */
+    static Long parseIfMatch(String ifMatch, LongSupplier currentVersion)
+    {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        List<Long> versions = new ArrayList<>();
+        for (String member : ifMatch.split(",")) {
+            String tag = member.trim();
+            boolean weak = tag.startsWith("W/");
+            String value = weak ? tag.substring(2) : tag;
+            if (value.length() < 2 || !value.startsWith("\"") || !value.endsWith("\"")) {
+                throw new IllegalArgumentException("Invalid If-Match header: " + ifMatch);
+            }
+            Long version = weak ? null : versionOf(value.substring(1, value.length() - 1));
+            if (version != null) {
+                versions.add(version);
+            }
+        }
+
+        long current = versions.isEmpty() ? 0 : currentVersion.getAsLong();
+        return current != 0 && versions.contains(current) ? current : 0L;
+    }
+
+    // The record version of an ETag value of this run ("epoch-version" or "epoch-version-format"), or null.
+    private static Long versionOf(String value)
+    {
+        int dash = value.indexOf('-');
+        if (dash < 1 || !value.substring(0, dash).equals(EPOCH)) {
+            return null;
+        }
+        int end = value.indexOf('-', dash + 1);
+        try {
+            return Long.parseLong(value.substring(dash + 1, end < 0 ? value.length() : end));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package hu.uni.restlab.controller;
+
+import java.util.List;
+
+/**
+ * Data record representing a delta sync response.
+ *
+ * The client keeps the version and sends it as "since" in its next sync.
+ */
+public record UserSyncResponse(
+        long version,
+        boolean hasMore,
+        List<UserChangeResponse> changes
+) { }
@@ -0,0 +1,88 @@
+package hu.uni.restlab.grpc;
+
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.protobuf.services.ProtoReflectionService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The gRPC server (HTTP/2, protobuf) on its own port, next to the REST API.
+ *
+ * It is started and stopped with the application context. Server reflection is
+ * enabled, so tools like grpcurl can call it without the .proto file.
+ */
+@Component
+public class UserGrpcServer implements SmartLifecycle {
+
+    private final UserGrpcService userGrpcService;
+    private final boolean enabled;
+    private final int port;
+    private final int maxInboundMessageBytes;
+    private final long shutdownGraceSeconds;
+    private volatile Server server;
+
+    public UserGrpcServer(UserGrpcService userGrpcService,
+                          @Value("${grpc.enabled:true}") boolean enabled,
+                          @Value("${grpc.port:9090}") int port,
+                          @Value("${grpc.max-inbound-message-bytes:4194304}") int maxInboundMessageBytes,
+                          @Value("${grpc.shutdown-grace-seconds:5}") long shutdownGraceSeconds)
+    {
+        this.userGrpcService = userGrpcService;
+        this.enabled = enabled;
+        this.port = port;
+        this.maxInboundMessageBytes = maxInboundMessageBytes;
+        this.shutdownGraceSeconds = shutdownGraceSeconds;
+    }
+
+    @Override
+    public void start()
+    {
+        if (!enabled) {
+            return;
+        }
+        try {
+            server = NettyServerBuilder.forPort(port)
+                    .addService(userGrpcService)
+                    .addService(ProtoReflectionService.newInstance())
+                    .maxInboundMessageSize(maxInboundMessageBytes)
+                    .build()
+                    .start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start the gRPC server on port " + port, e);
+        }
+    }
+
+    @Override
+    public void stop()
+    {
+        Server running = server;
+        if (running == null) {
+            return;
+        }
+        server = null;
+
+        // Let the running calls finish, then cancel the rest.
+        running.shutdown();
+        try {
+            if (!running.awaitTermination(shutdownGraceSeconds, TimeUnit.SECONDS)) {
+                running.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            running.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return server != null;
+    }
+
+}
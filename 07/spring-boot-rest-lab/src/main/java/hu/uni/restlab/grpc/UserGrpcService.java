@@ -0,0 +1,247 @@
+package hu.uni.restlab.grpc;
+
+import hu.uni.restlab.controller.UserCreateRequest;
+import hu.uni.restlab.grpc.proto.BulkCreateError;
+import hu.uni.restlab.grpc.proto.BulkCreateUsersResponse;
+import hu.uni.restlab.grpc.proto.CreateUserRequest;
+import hu.uni.restlab.grpc.proto.DeleteUserRequest;
+import hu.uni.restlab.grpc.proto.DeleteUserResponse;
+import hu.uni.restlab.grpc.proto.FindUserByEmailRequest;
+import hu.uni.restlab.grpc.proto.GetUserRequest;
+import hu.uni.restlab.grpc.proto.ListUsersRequest;
+import hu.uni.restlab.grpc.proto.UpdateUserRequest;
+import hu.uni.restlab.grpc.proto.UserRecord;
+import hu.uni.restlab.grpc.proto.UsersGrpc;
+import hu.uni.restlab.model.User;
+import hu.uni.restlab.service.DuplicateEmailException;
+import hu.uni.restlab.service.UserService;
+import hu.uni.restlab.service.UserSort;
+import hu.uni.restlab.service.VersionConflictException;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * gRPC implementation of the user operations (see users.proto).
+ *
+ * It works on the same UserService as the REST controller, so both views see the
+ * same store, with the same validation rules and the same optimistic concurrency.
+ * The service errors are translated to gRPC status codes:
+ * NOT_FOUND, INVALID_ARGUMENT, ALREADY_EXISTS (duplicate email) and ABORTED (version conflict).
+ */
+@Component
+public class UserGrpcService extends UsersGrpc.UsersImplBase {
+
+    private final UserService userService;
+    private final Validator validator;
+
+    public UserGrpcService(UserService userService, Validator validator) {
+        this.userService = userService;
+        this.validator = validator;
+    }
+
+    @Override
+    public void getUser(GetUserRequest request, StreamObserver<UserRecord> responseObserver)
+    {
+        reply(responseObserver, userService.findUserById(request.getId()), "User " + request.getId() + " not found");
+    }
+
+    @Override
+    public void findUserByEmail(FindUserByEmailRequest request, StreamObserver<UserRecord> responseObserver)
+    {
+        reply(responseObserver, userService.findUserByEmail(request.getEmail()), "No user with email " + request.getEmail());
+    }
+
+    @Override
+    public void listUsers(ListUsersRequest request, StreamObserver<UserRecord> responseObserver)
+    {
+        if (request.getLimit() < 0) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("limit must not be negative").asRuntimeException());
+            return;
+        }
+        UserSort order;
+        try {
+            order = request.getSort().isEmpty() ? UserSort.ID : UserSort.fromParam(request.getSort());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+
+        Stream<User> users = userService.streamUsers(order);
+        if (request.getLimit() > 0) {
+            users = users.limit(request.getLimit());
+        }
+        Iterator<User> it = users.iterator();
+
+        // Flow control: send only while the transport is ready, continue when the client has read.
+        // The store is read lazily from the sorted index, so nothing is buffered for a slow client.
+        // (The callbacks of a call never run concurrently, so the iterator needs no locking.)
+        ServerCallStreamObserver<UserRecord> call = (ServerCallStreamObserver<UserRecord>) responseObserver;
+        AtomicBoolean done = new AtomicBoolean();
+        call.setOnCancelHandler(() -> done.set(true));
+
+        Runnable drain = () -> {
+            while (!done.get() && call.isReady() && it.hasNext()) {
+                call.onNext(toRecord(it.next()));
+            }
+            if (!it.hasNext() && done.compareAndSet(false, true)) {
+                call.onCompleted();
+            }
+        };
+        call.setOnReadyHandler(drain);
+        drain.run();
+    }
+
+    @Override
+    public void createUser(CreateUserRequest request, StreamObserver<UserRecord> responseObserver)
+    {
+        String invalid = validate(request.getName(), request.getEmail());
+        if (invalid != null) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(invalid).asRuntimeException());
+            return;
+        }
+        try {
+            reply(responseObserver, Optional.of(userService.createUser(request.getName(), emailOrNull(request.getEmail()))), null);
+        } catch (DuplicateEmailException e) {
+            responseObserver.onError(Status.ALREADY_EXISTS.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void updateUser(UpdateUserRequest request, StreamObserver<UserRecord> responseObserver)
+    {
+        String invalid = validate(request.getName(), request.getEmail());
+        if (invalid != null) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(invalid).asRuntimeException());
+            return;
+        }
+        Long expectedVersion = request.hasExpectedVersion() ? request.getExpectedVersion() : null;
+        try {
+            reply(responseObserver,
+                    userService.updateUser(request.getId(), request.getName(), emailOrNull(request.getEmail()), expectedVersion),
+                    "User " + request.getId() + " not found");
+        } catch (DuplicateEmailException e) {
+            responseObserver.onError(Status.ALREADY_EXISTS.withDescription(e.getMessage()).asRuntimeException());
+        } catch (VersionConflictException e) {
+            responseObserver.onError(Status.ABORTED.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void deleteUser(DeleteUserRequest request, StreamObserver<DeleteUserResponse> responseObserver)
+    {
+        Long expectedVersion = request.hasExpectedVersion() ? request.getExpectedVersion() : null;
+        try {
+            boolean deleted = userService.deleteUser(request.getId(), expectedVersion);
+            if (!deleted) {
+                responseObserver.onError(Status.NOT_FOUND.withDescription("User " + request.getId() + " not found").asRuntimeException());
+                return;
+            }
+            responseObserver.onNext(DeleteUserResponse.newBuilder().setDeleted(true).build());
+            responseObserver.onCompleted();
+        } catch (VersionConflictException e) {
+            responseObserver.onError(Status.ABORTED.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    @Override
+    public StreamObserver<CreateUserRequest> bulkCreateUsers(StreamObserver<BulkCreateUsersResponse> responseObserver)
+    {
+        // Every item is created as it arrives; the response summarizes the whole stream.
+        BulkCreateUsersResponse.Builder result = BulkCreateUsersResponse.newBuilder();
+
+        return new StreamObserver<>() {
+            private int index;
+
+            @Override
+            public void onNext(CreateUserRequest item)
+            {
+                int position = index++;
+                String invalid = validate(item.getName(), item.getEmail());
+                if (invalid != null) {
+                    result.addErrors(error(position, Status.Code.INVALID_ARGUMENT, invalid));
+                    return;
+                }
+                try {
+                    result.addIds(userService.createUser(item.getName(), emailOrNull(item.getEmail())).getId());
+                } catch (DuplicateEmailException e) {
+                    result.addErrors(error(position, Status.Code.ALREADY_EXISTS, e.getMessage()));
+                }
+            }
+
+            @Override
+            public void onError(Throwable t)
+            {
+                // The client cancelled the stream; the users created so far remain.
+            }
+
+            @Override
+            public void onCompleted()
+            {
+                responseObserver.onNext(result.build());
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
+    // Sends the user, or NOT_FOUND if there is none.
+    private static void reply(StreamObserver<UserRecord> responseObserver, Optional<User> user, String notFound)
+    {
+        if (user.isEmpty()) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription(notFound).asRuntimeException());
+            return;
+        }
+        responseObserver.onNext(toRecord(user.get()));
+        responseObserver.onCompleted();
+    }
+
+    // Applies the same bean validation rules as the REST endpoints; returns the errors or null.
+    private String validate(String name, String email)
+    {
+        Set<ConstraintViolation<UserCreateRequest>> violations = validator.validate(new UserCreateRequest(name, emailOrNull(email)));
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    // proto3 has no null strings: an empty email means no email, like a missing field in JSON.
+    private static String emailOrNull(String email)
+    {
+        return email.isEmpty() ? null : email;
+    }
+
+    private static BulkCreateError error(int index, Status.Code code, String message)
+    {
+        return BulkCreateError.newBuilder().setIndex(index).setCode(code.name()).setMessage(message).build();
+    }
+
+    private static UserRecord toRecord(User user)
+    {
+        UserRecord.Builder record = UserRecord.newBuilder()
+                .setId(user.getId())
+                .setVersion(user.getVersion());
+        // proto3 strings cannot be null.
+        if (user.getName() != null) {
+            record.setName(user.getName());
+        }
+        if (user.getEmail() != null) {
+            record.setEmail(user.getEmail());
+        }
+        return record.build();
+    }
+
+}
@@ -13,6 +13,13 @@ public class User {
     private String name;
     private String email;
 
+    // Version of this record, incremented on every update (starts at 1).
+    // It is used as a strong ETag for conditional requests.
+    private long version = 1;
+
+    // Time of the last modification in epoch milliseconds (Last-Modified header).
+    private long lastModified = System.currentTimeMillis();
+
     /**
      * Default constructor for frameworks.
      */
@@ -45,6 +52,24 @@ public class User {
         this.email = email;
     }
 
+    /**
+     * Full constructor including id, version and modification time.
+     *
+     * @param id the user's unique identifier
+     * @param name the user's name
+     * @param email the user's email address
+     * @param version the version of the record
+     * @param lastModified the modification time in epoch milliseconds
+     */
+    public User(Long id, String name, String email, long version, long lastModified)
+    {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+        this.version = version;
+        this.lastModified = lastModified;
+    }
+
     // Getters and setters
 
     public Long getId() {
@@ -71,4 +96,20 @@ public class User {
         this.email = email;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
 }
@@ -0,0 +1,231 @@
+package hu.uni.restlab.persistence;
+
+import hu.uni.restlab.model.User;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Compact binary snapshot of the whole user store, written and read through memory-mapped files.
+ *
+ * A snapshot named snapshot-000005.bin belongs to WAL segment 5: on startup it is loaded
+ * first, then segments 5, 6, ... are replayed on top of it.
+ *
+ * Layout:
+ *   header:  int magic, int format, long segment, long idHighWaterMark, long modificationCount
+ *   records: int length, record (see UserRecordCodec), repeated
+ *   footer:  int -1, long record count
+ *
+ * The file is written under a temporary name and renamed when complete,
+ * so a crash during a snapshot never leaves a half-written snapshot behind.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x55534E50; // "USNP"
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 3 * Long.BYTES;
+
+    // Size of one mapped window; the file is mapped window by window.
+    private static final int WINDOW_SIZE = 64 << 20;
+
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.bin");
+
+    /**
+     * Header of a loaded snapshot.
+     */
+    record Header(long segment, long idHighWaterMark, long modificationCount) { }
+
+    private SnapshotFile() {
+    }
+
+    static Path snapshotPath(Path directory, long segment)
+    {
+        return directory.resolve(String.format("snapshot-%06d.bin", segment));
+    }
+
+    /**
+     * Writes a snapshot of the given users.
+     *
+     * @param directory the data directory
+     * @param header the header to store
+     * @param users the users to store (a weakly consistent view is fine, the WAL replay fixes it up)
+     * @return the number of stored users
+     */
+    static long write(Path directory, Header header, Iterator<User> users) throws IOException
+    {
+        Path target = snapshotPath(directory, header.segment());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedWriter out = new MappedWriter(channel);
+
+            ByteBuffer head = out.reserve(HEADER_SIZE);
+            head.putInt(MAGIC);
+            head.putInt(FORMAT);
+            head.putLong(header.segment());
+            head.putLong(header.idHighWaterMark());
+            head.putLong(header.modificationCount());
+
+            while (users.hasNext()) {
+                byte[] record = UserRecordCodec.encode(UserRecordCodec.PUT, users.next());
+                out.reserve(Integer.BYTES + record.length).putInt(record.length).put(record);
+                count++;
+            }
+
+            out.reserve(Integer.BYTES + Long.BYTES).putInt(-1).putLong(count);
+            out.finish();
+        }
+
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return count;
+    }
+
+    /**
+     * Loads the latest complete snapshot, if there is one.
+     *
+     * @param directory the data directory
+     * @param consumer receives every stored user
+     * @return the header of the loaded snapshot, or null if there is none
+     */
+    static Header readLatest(Path directory, Consumer<User> consumer) throws IOException
+    {
+        List<Long> segments = listSnapshots(directory);
+        if (segments.isEmpty()) {
+            return null;
+        }
+
+        Path path = snapshotPath(directory, segments.get(segments.size() - 1));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedReader in = new MappedReader(channel);
+
+            ByteBuffer head = in.require(HEADER_SIZE);
+            if (head.getInt() != MAGIC || head.getInt() != FORMAT) {
+                throw new IOException("Not a user store snapshot: " + path);
+            }
+            Header header = new Header(head.getLong(), head.getLong(), head.getLong());
+
+            long count = 0;
+            while (true) {
+                int length = in.require(Integer.BYTES).getInt();
+                if (length < 0) {
+                    break;
+                }
+                consumer.accept(UserRecordCodec.decode(in.require(length)).user());
+                count++;
+            }
+
+            if (in.require(Long.BYTES).getLong() != count) {
+                throw new IOException("Corrupt snapshot (record count mismatch): " + path);
+            }
+            return header;
+        }
+    }
+
+    /**
+     * Deletes the snapshots older than the given segment.
+     */
+    static void deleteOlder(Path directory, long segment) throws IOException
+    {
+        for (long older : listSnapshots(directory)) {
+            if (older < segment) {
+                Files.deleteIfExists(snapshotPath(directory, older));
+            }
+        }
+    }
+
+    private static List<Long> listSnapshots(Path directory) throws IOException
+    {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(path -> SNAPSHOT_NAME.matcher(path.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(m -> Long.parseLong(m.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Sequential writer over a file that is mapped window by window.
+     */
+    private static final class MappedWriter {
+
+        private final FileChannel channel;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        MappedWriter(FileChannel channel) throws IOException
+        {
+            this.channel = channel;
+            this.window = channel.map(FileChannel.MapMode.READ_WRITE, 0, WINDOW_SIZE);
+        }
+
+        // Returns the current window with at least size bytes remaining, mapping the next window if needed.
+        ByteBuffer reserve(int size) throws IOException
+        {
+            if (window.remaining() < size) {
+                window.force();
+                windowStart += window.position();
+                window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, Math.max(WINDOW_SIZE, size));
+            }
+            return window;
+        }
+
+        // Forces the data to disk and cuts the file to the written length.
+        void finish() throws IOException
+        {
+            window.force();
+            long length = windowStart + window.position();
+            window = null;
+            channel.truncate(length);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Sequential reader over a file that is mapped window by window.
+     */
+    private static final class MappedReader {
+
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        MappedReader(FileChannel channel) throws IOException
+        {
+            this.channel = channel;
+            this.size = channel.size();
+            this.window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW_SIZE, size));
+        }
+
+        // Returns the current window with at least needed bytes remaining, mapping the next window if needed.
+        ByteBuffer require(int needed) throws IOException
+        {
+            if (window.remaining() < needed) {
+                windowStart += window.position();
+                long length = Math.min(Math.max(WINDOW_SIZE, needed), size - windowStart);
+                if (length < needed) {
+                    throw new IOException("Truncated snapshot");
+                }
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+            }
+            return window;
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package hu.uni.restlab.persistence;
+
+import hu.uni.restlab.model.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding of user records, shared by the write-ahead log and the snapshots.
+ *
+ * Layout of a record:
+ *   byte type, long id, long version, long lastModified, string name, string email
+ * where a string is an int length (-1 for null) followed by the UTF-8 bytes.
+ */
+final class UserRecordCodec {
+
+    // Record types.
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    private UserRecordCodec() {
+    }
+
+    /**
+     * A decoded record: the type and the user data (for DELETE only id and version are meaningful).
+     */
+    record Entry(byte type, User user) { }
+
+    /**
+     * Encodes a record into a new byte array.
+     */
+    static byte[] encode(byte type, User user)
+    {
+        byte[] name = bytes(user.getName());
+        byte[] email = bytes(user.getEmail());
+
+        ByteBuffer buf = ByteBuffer.allocate(1 + 3 * Long.BYTES + stringSize(name) + stringSize(email));
+        buf.put(type);
+        buf.putLong(user.getId());
+        buf.putLong(user.getVersion());
+        buf.putLong(user.getLastModified());
+        putString(buf, name);
+        putString(buf, email);
+
+        return buf.array();
+    }
+
+    /**
+     * Decodes a record from the current position of the buffer.
+     */
+    static Entry decode(ByteBuffer buf)
+    {
+        byte type = buf.get();
+        long id = buf.getLong();
+        long version = buf.getLong();
+        long lastModified = buf.getLong();
+        String name = getString(buf);
+        String email = getString(buf);
+
+        if (type != PUT && type != DELETE) {
+            throw new IllegalStateException("Unknown record type: " + type);
+        }
+
+        return new Entry(type, new User(id, name, email, version, lastModified));
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringSize(byte[] value) {
+        return Integer.BYTES + (value == null ? 0 : value.length);
+    }
+
+    private static void putString(ByteBuffer buf, byte[] value)
+    {
+        if (value == null) {
+            buf.putInt(-1);
+        } else {
+            buf.putInt(value.length);
+            buf.put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer buf)
+    {
+        int length = buf.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] value = new byte[length];
+        buf.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,350 @@
+package hu.uni.restlab.persistence;
+
+import hu.uni.restlab.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of user mutations with group commit.
+ *
+ * Callers only put the encoded record into a queue, which takes microseconds.
+ * A single writer thread drains everything that queued up, writes it with one
+ * system call and forces it to disk with one fsync, so concurrent writers share
+ * the cost of the fsync (group commit).
+ *
+ * The log is split into numbered segment files (wal-000001.log, ...). A new segment
+ * is started at every snapshot, and segments older than the latest snapshot are deleted.
+ *
+ * Frame layout: int payload length, int CRC32 of the payload, payload (see UserRecordCodec).
+ */
+final class WriteAheadLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d+)\\.log");
+
+    // Maximum number of queued items written in one group.
+    private static final int MAX_GROUP_SIZE = 8192;
+
+    // Queue items: an encoded record, a segment roll request, or the stop marker.
+    private record Append(byte[] payload, CompletableFuture<Void> durable) { }
+
+    record Roll(long segment, CompletableFuture<Void> done) { }
+
+    private static final Object STOP = new Object();
+
+    private final Path directory;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong lastSegment;
+    private final Thread writer;
+
+    // Owned by the writer thread.
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+
+    // Set when the writer thread fails; appends are rejected afterwards.
+    private volatile IOException failure;
+
+    /**
+     * Opens a new segment after the given one and starts the writer thread.
+     *
+     * @param directory the data directory
+     * @param lastSegment the number of the last existing segment (0 if none)
+     */
+    WriteAheadLog(Path directory, long lastSegment) throws IOException
+    {
+        this.directory = directory;
+        this.lastSegment = new AtomicLong(lastSegment + 1);
+        this.channel = openSegment(lastSegment + 1);
+
+        this.writer = new Thread(this::run, "user-store-wal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a record for writing.
+     *
+     * @param type the record type (UserRecordCodec.PUT or DELETE)
+     * @param user the user record
+     * @param waitForDurable whether the caller wants to wait until the record is on disk
+     * @return a future completed after the fsync of the record, or null if not requested
+     */
+    CompletableFuture<Void> append(byte type, User user, boolean waitForDurable)
+    {
+        checkHealthy();
+
+        CompletableFuture<Void> durable = waitForDurable ? new CompletableFuture<>() : null;
+        queue.add(new Append(UserRecordCodec.encode(type, user), durable));
+        failPendingIfFailed();
+        return durable;
+    }
+
+    /**
+     * Requests a new segment. Every record queued before this call ends up in an older
+     * segment, every record queued after it in the new one (or a later one).
+     *
+     * @return the roll request with the number of the new segment
+     */
+    Roll roll()
+    {
+        checkHealthy();
+
+        Roll roll = new Roll(lastSegment.incrementAndGet(), new CompletableFuture<>());
+        queue.add(roll);
+        failPendingIfFailed();
+        return roll;
+    }
+
+    /**
+     * Throws if the writer thread has failed: nothing can be logged any more.
+     *
+     * @throws UncheckedIOException with the error of the writer thread
+     */
+    void checkHealthy()
+    {
+        IOException e = failure;
+        if (e != null) {
+            throw new UncheckedIOException("Write-ahead log failed", e);
+        }
+    }
+
+    /**
+     * Writes out everything queued so far and stops the writer thread.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        queue.add(STOP);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    // Writer thread: one write + one fsync per group of queued records.
+    private void run()
+    {
+        List<Object> group = new ArrayList<>();
+        List<CompletableFuture<Void>> waiting = new ArrayList<>();
+        boolean stop = false;
+
+        while (!stop) {
+            try {
+                Object first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, MAX_GROUP_SIZE - 1);
+
+                for (Object item : group) {
+                    if (item instanceof Append append) {
+                        writeFrame(append.payload());
+                        if (append.durable() != null) {
+                            waiting.add(append.durable());
+                        }
+                    } else if (item instanceof Roll roll) {
+                        commit(waiting);
+                        channel.close();
+                        channel = openSegment(roll.segment());
+                        roll.done().complete(null);
+                    } else if (item == STOP) {
+                        stop = true;
+                    }
+                }
+
+                commit(waiting);
+                group.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.error("Write-ahead log failed, no further mutations will be logged", e);
+                failure = e;
+                // Nobody may wait for a write that will never happen: fail the rest of the group
+                // and everything still queued (completing a completed future changes nothing).
+                waiting.forEach(future -> future.completeExceptionally(e));
+                fail(group, e);
+                failPendingIfFailed();
+                return;
+            }
+        }
+    }
+
+    // Fails the queued items if the writer thread has failed. Called by the writer thread when it fails,
+    // and by the callers after queueing, in case the writer failed in between and will not see their item.
+    private void failPendingIfFailed()
+    {
+        IOException e = failure;
+        if (e != null) {
+            List<Object> pending = new ArrayList<>();
+            queue.drainTo(pending);
+            fail(pending, e);
+        }
+    }
+
+    private static void fail(List<Object> items, IOException e)
+    {
+        for (Object item : items) {
+            if (item instanceof Append append && append.durable() != null) {
+                append.durable().completeExceptionally(e);
+            } else if (item instanceof Roll roll) {
+                roll.done().completeExceptionally(e);
+            }
+        }
+    }
+
+    // Adds one frame to the write buffer, flushing it first if the frame does not fit.
+    private void writeFrame(byte[] payload) throws IOException
+    {
+        int frameSize = 2 * Integer.BYTES + payload.length;
+        if (buffer.remaining() < frameSize) {
+            flushBuffer();
+            if (buffer.capacity() < frameSize) {
+                buffer = ByteBuffer.allocateDirect(frameSize);
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+    }
+
+    // Writes the buffer and forces it to disk, then releases the waiting writers.
+    private void commit(List<CompletableFuture<Void>> waiting) throws IOException
+    {
+        if (buffer.position() == 0 && waiting.isEmpty()) {
+            return;
+        }
+
+        flushBuffer();
+        channel.force(false);
+
+        waiting.forEach(future -> future.complete(null));
+        waiting.clear();
+    }
+
+    private void flushBuffer() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private FileChannel openSegment(long segment) throws IOException
+    {
+        return FileChannel.open(segmentPath(directory, segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    static Path segmentPath(Path directory, long segment)
+    {
+        return directory.resolve(String.format("wal-%06d.log", segment));
+    }
+
+    /**
+     * Returns the numbers of the existing segments in ascending order.
+     */
+    static List<Long> listSegments(Path directory) throws IOException
+    {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(path -> SEGMENT_NAME.matcher(path.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(m -> Long.parseLong(m.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Replays the segments starting at the given number, in order.
+     *
+     * A torn frame at the end of a segment (crash in the middle of a write) ends
+     * the replay of that segment and is cut off, so the file is clean again.
+     *
+     * @param directory the data directory
+     * @param fromSegment the first segment to replay
+     * @param consumer receives every decoded record
+     * @return the number of replayed records
+     */
+    static long replay(Path directory, long fromSegment, Consumer<UserRecordCodec.Entry> consumer) throws IOException
+    {
+        long count = 0;
+
+        for (long segment : listSegments(directory)) {
+            if (segment < fromSegment) {
+                continue;
+            }
+
+            Path path = segmentPath(directory, segment);
+            long validLength = 0;
+
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+                while (true) {
+                    byte[] payload;
+                    int checksum;
+                    try {
+                        int length = in.readInt();
+                        checksum = in.readInt();
+                        if (length < 0 || length > (1 << 24)) {
+                            break;
+                        }
+                        payload = new byte[length];
+                        in.readFully(payload);
+                    } catch (EOFException e) {
+                        break;
+                    }
+
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+
+                    consumer.accept(UserRecordCodec.decode(ByteBuffer.wrap(payload)));
+                    validLength += 2 * Integer.BYTES + payload.length;
+                    count++;
+                }
+            }
+
+            // Cut off a torn tail, if any.
+            if (Files.size(path) > validLength) {
+                log.warn("Truncating torn tail of {} at {} bytes", path.getFileName(), validLength);
+                try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    ch.truncate(validLength);
+                }
+            }
+        }
+
+        return count;
+    }
+
+}
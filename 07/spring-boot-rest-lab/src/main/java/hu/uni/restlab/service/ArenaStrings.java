@@ -0,0 +1,125 @@
+package hu.uni.restlab.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Helpers for strings packed into a shared byte array (an "arena").
+ *
+ * A string is stored as its UTF-8 length (varint) followed by the UTF-8 bytes,
+ * so a short ASCII string costs its length + 1 byte instead of a String object
+ * and a byte[] with their headers.
+ */
+final class ArenaStrings {
+
+    private ArenaStrings() {
+    }
+
+    static byte[] encode(String value)
+    {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of arena bytes a string of the given UTF-8 length takes up.
+     */
+    static int encodedLength(int byteLength)
+    {
+        return prefixLength(byteLength) + byteLength;
+    }
+
+    /**
+     * Returns the number of arena bytes the string at the given offset takes up.
+     */
+    static int encodedLengthAt(byte[] arena, int offset)
+    {
+        return encodedLength(byteLength(arena, offset));
+    }
+
+    /**
+     * Writes the bytes at the given offset.
+     *
+     * @return the offset right after the written string
+     */
+    static int write(byte[] arena, int offset, byte[] bytes)
+    {
+        int n = bytes.length;
+        while ((n & ~0x7F) != 0) {
+            arena[offset++] = (byte) ((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        arena[offset++] = (byte) n;
+        System.arraycopy(bytes, 0, arena, offset, bytes.length);
+        return offset + bytes.length;
+    }
+
+    static String read(byte[] arena, int offset)
+    {
+        int n = byteLength(arena, offset);
+        return new String(arena, offset + prefixLength(n), n, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares the string at the given offset with the given UTF-8 bytes.
+     */
+    static boolean equalsAt(byte[] arena, int offset, byte[] bytes)
+    {
+        int n = byteLength(arena, offset);
+        int start = offset + prefixLength(n);
+        return n == bytes.length && Arrays.equals(arena, start, start + n, bytes, 0, n);
+    }
+
+    /**
+     * Hashes the string at the given offset, consistently with {@link #hash(byte[])}.
+     */
+    static int hashAt(byte[] arena, int offset)
+    {
+        int n = byteLength(arena, offset);
+        int start = offset + prefixLength(n);
+        int h = 1;
+        for (int i = start; i < start + n; i++) {
+            h = 31 * h + arena[i];
+        }
+        return mix(h);
+    }
+
+    static int hash(byte[] bytes)
+    {
+        return mix(Arrays.hashCode(bytes));
+    }
+
+    // Decodes the varint length prefix at the given offset.
+    private static int byteLength(byte[] arena, int offset)
+    {
+        int n = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = arena[offset++];
+            n |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return n;
+    }
+
+    private static int prefixLength(int byteLength)
+    {
+        int prefix = 1;
+        for (int n = byteLength >>> 7; n != 0; n >>>= 7) {
+            prefix++;
+        }
+        return prefix;
+    }
+
+    // Spreads the bits of a hash code (murmur3 finalizer), so linear probing stays short.
+    private static int mix(int h)
+    {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+}
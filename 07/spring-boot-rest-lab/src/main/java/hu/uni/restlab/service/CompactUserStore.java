@@ -0,0 +1,434 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.model.User;
+
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Memory-compact store for very large user sets (10M+ records).
+ *
+ * Instead of one object graph per user, the records are kept in primitive columns:
+ * <ul>
+ *     <li>the id is not stored at all: ids are dense (they come from a sequence), so the
+ *     low bits of the id select one of the segments and the rest is the array index in it,
+ *     which makes a lookup O(1) without hashing or boxing;</li>
+ *     <li>version and modification time (in seconds) are int columns;</li>
+ *     <li>names and email domains are interned in shared string dictionaries;</li>
+ *     <li>the local part of the email is packed as UTF-8 into a per-segment byte arena.</li>
+ * </ul>
+ * A user takes about 20 bytes of columns plus its email local part, and its name
+ * unless the name is shared with others, instead of ~200 bytes in the map store.
+ * That is the records only: the indexes of the UserService (the sort orders with
+ * lower-cased copies of the names and emails, the email and the search index) come
+ * on top for both engines, and they take more than the columns do.
+ *
+ * Concurrency: writers lock one segment; readers use an optimistic read of the segment
+ * and only fall back to its read lock if a writer interfered. The materialized User
+ * objects are fresh copies, their modification time is truncated to seconds.
+ */
+class CompactUserStore implements UserStore {
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final int NONE = -1;
+
+    private final StringDictionary names = new StringDictionary();
+    private final StringDictionary domains = new StringDictionary();
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    CompactUserStore()
+    {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(i);
+        }
+    }
+
+    @Override
+    public String engine() {
+        return "compact";
+    }
+
+    @Override
+    public User get(long id)
+    {
+        if (id <= 0) {
+            return null;
+        }
+        return segmentOf(id).get(id);
+    }
+
+    @Override
+    public void put(User user)
+    {
+        Segment segment = segmentOf(user.getId());
+        long stamp = segment.lock.writeLock();
+        try {
+            segment.put(user);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean replace(User expected, User replacement)
+    {
+        Segment segment = segmentOf(expected.getId());
+        long stamp = segment.lock.writeLock();
+        try {
+            int index = segment.indexOf(expected.getId());
+            if (!segment.holds(index, expected.getVersion())) {
+                return false;
+            }
+            segment.put(replacement);
+            return true;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(User expected)
+    {
+        Segment segment = segmentOf(expected.getId());
+        long stamp = segment.lock.writeLock();
+        try {
+            int index = segment.indexOf(expected.getId());
+            if (!segment.holds(index, expected.getVersion())) {
+                return false;
+            }
+            segment.remove(index);
+            return true;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Iterator<User> iterator()
+    {
+        // Materializes one segment at a time, so memory use stays proportional to a segment.
+        return new Iterator<>() {
+            private int next;
+            private Iterator<User> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && next < SEGMENTS) {
+                    current = segments[next++].users().iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    @Override
+    public int size()
+    {
+        int size = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public long estimateHeapBytes()
+    {
+        long bytes = names.estimateHeapBytes() + domains.estimateHeapBytes();
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                bytes += segment.estimateHeapBytes();
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return bytes;
+    }
+
+    private Segment segmentOf(long id)
+    {
+        return segments[(int) (id & (SEGMENTS - 1))];
+    }
+
+    /**
+     * One stripe of the store: the users whose id has the same low bits.
+     * All fields are guarded by the lock.
+     */
+    private final class Segment {
+
+        final StampedLock lock = new StampedLock();
+        private final int number;
+
+        // Column index i holds the user with id ((base + i) << SEGMENT_BITS) | segment number.
+        private int base;
+        private int[] versions = new int[16];       // 0 = no user at this index
+        private int[] modifiedSeconds = new int[16];
+        private int[] nameRefs = new int[16];
+        private int[] domainRefs = new int[16];     // NONE if the email has no '@'
+        private int[] localOffsets = new int[16];   // NONE if the email is null
+        private int size;
+        private int removals;
+
+        private byte[] arena = new byte[256];
+        private int arenaUsed;
+        private int garbageBytes;
+
+        Segment(int number)
+        {
+            this.number = number;
+        }
+
+        // Returns the column index of the id, or NONE if it is outside the columns.
+        int indexOf(long id)
+        {
+            long index = (id >>> SEGMENT_BITS) - base;
+            return index >= 0 && index < versions.length ? (int) index : NONE;
+        }
+
+        // Tells whether the given index holds the user with the given version.
+        boolean holds(int index, long version)
+        {
+            return index != NONE && versions[index] != 0 && versions[index] == version;
+        }
+
+        User get(long id)
+        {
+            // Optimistic read: no lock is taken; if a writer got in between, the result
+            // (or the exception of a torn read) is discarded and the read is repeated locked.
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    User user = read(id);
+                    if (lock.validate(stamp)) {
+                        return user;
+                    }
+                } catch (RuntimeException e) {
+                    // Inconsistent state seen during a concurrent write, retried below.
+                }
+            }
+
+            stamp = lock.readLock();
+            try {
+                return read(id);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private User read(long id)
+        {
+            int index = indexOf(id);
+            if (index == NONE || versions[index] == 0) {
+                return null;
+            }
+
+            int nameRef = nameRefs[index];
+            int localOffset = localOffsets[index];
+            int domainRef = domainRefs[index];
+
+            String name = nameRef == NONE ? null : names.get(nameRef);
+            String email = null;
+            if (localOffset != NONE) {
+                String local = ArenaStrings.read(arena, localOffset);
+                email = domainRef == NONE ? local : local + '@' + domains.get(domainRef);
+            }
+
+            return new User(id, name, email, versions[index],
+                    Integer.toUnsignedLong(modifiedSeconds[index]) * 1000);
+        }
+
+        void put(User user)
+        {
+            int index = allocate(user.getId());
+            if (versions[index] != 0) {
+                release(index);
+            } else {
+                size++;
+            }
+
+            String email = user.getEmail();
+            versions[index] = Math.toIntExact(user.getVersion());
+            modifiedSeconds[index] = (int) (user.getLastModified() / 1000);
+            nameRefs[index] = user.getName() == null ? NONE : names.acquire(user.getName());
+            domainRefs[index] = NONE;
+            localOffsets[index] = NONE;
+            if (email != null) {
+                int at = email.lastIndexOf('@');
+                if (at >= 0) {
+                    domainRefs[index] = domains.acquire(email.substring(at + 1));
+                    email = email.substring(0, at);
+                }
+                localOffsets[index] = appendLocal(ArenaStrings.encode(email));
+            }
+        }
+
+        void remove(int index)
+        {
+            release(index);
+            versions[index] = 0;
+            size--;
+
+            // Every so many deletes the columns are cut back to the live range, so deleting
+            // the oldest users frees their space (amortized O(1) per delete).
+            if (++removals > versions.length / 4) {
+                removals = 0;
+                shrink();
+            }
+        }
+
+        // Drops the string references of the user at the index.
+        private void release(int index)
+        {
+            if (nameRefs[index] != NONE) {
+                names.release(nameRefs[index]);
+                nameRefs[index] = NONE;
+            }
+            if (domainRefs[index] != NONE) {
+                domains.release(domainRefs[index]);
+                domainRefs[index] = NONE;
+            }
+            if (localOffsets[index] != NONE) {
+                garbageBytes += ArenaStrings.encodedLengthAt(arena, localOffsets[index]);
+                localOffsets[index] = NONE;
+            }
+        }
+
+        // Returns the column index for the id, growing or rebasing the columns to cover it.
+        private int allocate(long id)
+        {
+            long local = id >>> SEGMENT_BITS;
+            if (size == 0) {
+                base = (int) local;
+            }
+
+            long first = Math.min(local, base);
+            long end = Math.max(local + 1, (long) base + versions.length);
+            if (end - first > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("User id out of range: " + id);
+            }
+            if (first < base || end > (long) base + versions.length) {
+                int length = (int) (end - first);
+                resize((int) first, Math.max(length, (int) Math.min(Integer.MAX_VALUE - 8, length + (length >> 1))));
+            }
+            return (int) (local - base);
+        }
+
+        // Cuts the columns back to the range between the first and the last user.
+        private void shrink()
+        {
+            if (size == 0) {
+                resize(0, 16);
+                return;
+            }
+            int first = 0;
+            while (versions[first] == 0) {
+                first++;
+            }
+            int last = versions.length - 1;
+            while (versions[last] == 0) {
+                last--;
+            }
+            int length = Math.max(16, last - first + 1);
+            if (length < versions.length * 3 / 4) {
+                resize(base + first, length + (length >> 1));
+            }
+        }
+
+        // Copies the columns into new arrays of the given length starting at the given base.
+        private void resize(int newBase, int length)
+        {
+            int from = Math.max(base, newBase);
+            int to = Math.min(base + versions.length, newBase + length);
+            versions = copy(versions, newBase, length, from, to);
+            modifiedSeconds = copy(modifiedSeconds, newBase, length, from, to);
+            nameRefs = copy(nameRefs, newBase, length, from, to);
+            domainRefs = copy(domainRefs, newBase, length, from, to);
+            localOffsets = copy(localOffsets, newBase, length, from, to);
+            base = newBase;
+        }
+
+        private int[] copy(int[] column, int newBase, int length, int from, int to)
+        {
+            int[] copy = new int[length];
+            if (to > from) {
+                System.arraycopy(column, from - base, copy, from - newBase, to - from);
+            }
+            return copy;
+        }
+
+        // Appends an email local part to the arena, compacting or growing it when full.
+        private int appendLocal(byte[] bytes)
+        {
+            int length = ArenaStrings.encodedLength(bytes.length);
+            if (arenaUsed + length > arena.length) {
+                int live = arenaUsed - garbageBytes;
+                byte[] target = new byte[Math.max(256, (live + length) * 3 / 2)];
+                if (garbageBytes < live) {
+                    // Mostly live data: just grow the arena.
+                    target = Arrays.copyOf(arena, Math.max(target.length, arena.length + (arena.length >> 1)));
+                } else {
+                    // Mostly garbage: copy the live strings only and update their offsets.
+                    arenaUsed = compactInto(target);
+                    garbageBytes = 0;
+                }
+                arena = target;
+            }
+
+            int offset = arenaUsed;
+            arenaUsed = ArenaStrings.write(arena, offset, bytes);
+            return offset;
+        }
+
+        private int compactInto(byte[] target)
+        {
+            int used = 0;
+            for (int i = 0; i < versions.length; i++) {
+                if (localOffsets[i] != NONE && versions[i] != 0) {
+                    int length = ArenaStrings.encodedLengthAt(arena, localOffsets[i]);
+                    System.arraycopy(arena, localOffsets[i], target, used, length);
+                    localOffsets[i] = used;
+                    used += length;
+                }
+            }
+            return used;
+        }
+
+        // Materializes the users of this segment under the read lock.
+        List<User> users()
+        {
+            long stamp = lock.readLock();
+            try {
+                List<User> users = new ArrayList<>(size);
+                for (int i = 0; i < versions.length; i++) {
+                    if (versions[i] != 0) {
+                        users.add(read(((long) (base + i) << SEGMENT_BITS) | number));
+                    }
+                }
+                return users;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        long estimateHeapBytes()
+        {
+            return 16L * 6 + 4L * 5 * versions.length + arena.length;
+        }
+    }
+
+}
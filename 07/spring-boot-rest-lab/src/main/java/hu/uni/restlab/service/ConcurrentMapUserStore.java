@@ -0,0 +1,79 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.model.User;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The default store: one User object per user in a ConcurrentHashMap.
+ *
+ * Fast and simple, but every user costs a map node, a boxed Long key,
+ * the User object and two String objects on the heap.
+ */
+class ConcurrentMapUserStore implements UserStore {
+
+    // Approximate sizes with compressed oops: map node, boxed key, User object, String object.
+    private static final int NODE_BYTES = 32 + 4;
+    private static final int KEY_BYTES = 16;
+    private static final int USER_BYTES = 40;
+    private static final int STRING_BYTES = 24 + 16;
+
+    private final ConcurrentHashMap<Long, User> users = new ConcurrentHashMap<>();
+
+    @Override
+    public String engine() {
+        return "map";
+    }
+
+    @Override
+    public User get(long id) {
+        return users.get(id);
+    }
+
+    @Override
+    public void put(User user) {
+        users.put(user.getId(), user);
+    }
+
+    // Note: the map compares with equals(), which is identity for User. That is at least as strict
+    // as comparing versions, because the records passed in were read from this map.
+    @Override
+    public boolean replace(User expected, User replacement) {
+        return users.replace(expected.getId(), expected, replacement);
+    }
+
+    @Override
+    public boolean remove(User expected) {
+        return users.remove(expected.getId(), expected);
+    }
+
+    @Override
+    public Iterator<User> iterator() {
+        return users.values().iterator();
+    }
+
+    @Override
+    public int size() {
+        return users.size();
+    }
+
+    @Override
+    public long estimateHeapBytes()
+    {
+        long bytes = 0;
+        for (User user : users.values()) {
+            bytes += NODE_BYTES + KEY_BYTES + USER_BYTES
+                    + stringBytes(user.getName()) + stringBytes(user.getEmail());
+        }
+        return bytes;
+    }
+
+    // Latin-1 strings store one byte per character, the array is padded to 8 bytes.
+    // (Also used by the index estimates.)
+    static long stringBytes(String value)
+    {
+        return value == null ? 0 : STRING_BYTES + ((value.length() + 7) & ~7);
+    }
+
+}
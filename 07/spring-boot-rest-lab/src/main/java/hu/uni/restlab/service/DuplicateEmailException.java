@@ -0,0 +1,23 @@
+package hu.uni.restlab.service;
+
+/**
+ * Thrown when a create or update would give a user an email address
+ * that already belongs to another user.
+ *
+ * The REST layer translates it to 409 Conflict.
+ */
+public class DuplicateEmailException extends RuntimeException {
+
+    private final String email;
+
+    public DuplicateEmailException(String email)
+    {
+        super("Email " + email + " is already in use");
+        this.email = email;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+}
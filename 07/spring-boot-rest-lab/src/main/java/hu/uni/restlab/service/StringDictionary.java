@@ -0,0 +1,195 @@
+package hu.uni.restlab.service;
+
+import java.util.Arrays;
+
+/**
+ * Reference-counted string dictionary: every distinct string is stored once
+ * and referred to by a small int id.
+ *
+ * The strings live in a byte arena and the lookup table is an open-addressing
+ * int array, so an entry costs a few ints besides its UTF-8 bytes.
+ * Writers are serialized by the monitor; {@link #get(int)} is lock-free and safe
+ * for any id the caller still holds a reference to.
+ */
+final class StringDictionary {
+
+    // The arena and the offsets of the entries, published together for the readers.
+    private record Table(byte[] arena, int[] offsets) {
+    }
+
+    private volatile Table table = new Table(new byte[256], new int[16]);
+
+    // Writer state, guarded by this.
+    private int arenaUsed;
+    private int garbageBytes;
+    private int[] refCounts = new int[16];
+    private int[] buckets = new int[16];      // id + 1 of the entry, 0 = empty slot
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    private int nextId;
+    private int count;
+
+    /**
+     * Returns the string with the given id.
+     */
+    String get(int id)
+    {
+        Table t = table;
+        return ArenaStrings.read(t.arena(), t.offsets()[id]);
+    }
+
+    /**
+     * Returns the id of the string, adding it if needed, and takes a reference to it.
+     */
+    synchronized int acquire(String value)
+    {
+        byte[] bytes = ArenaStrings.encode(value);
+        int hash = ArenaStrings.hash(bytes);
+        Table t = table;
+
+        int mask = buckets.length - 1;
+        int i = hash & mask;
+        for (int b = buckets[i]; b != 0; b = buckets[i]) {
+            if (ArenaStrings.equalsAt(t.arena(), t.offsets()[b - 1], bytes)) {
+                refCounts[b - 1]++;
+                return b - 1;
+            }
+            i = (i + 1) & mask;
+        }
+
+        int id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+        t = append(t, id, bytes);
+        refCounts[id] = 1;
+        buckets[i] = id + 1;
+        if (++count * 4 > buckets.length * 3) {
+            rehash(t, buckets.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * Drops a reference taken by {@link #acquire(String)}; the last one removes the entry.
+     */
+    synchronized void release(int id)
+    {
+        if (--refCounts[id] > 0) {
+            return;
+        }
+
+        Table t = table;
+        garbageBytes += ArenaStrings.encodedLengthAt(t.arena(), t.offsets()[id]);
+        count--;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+
+        // Compact the arena once half of it is garbage, otherwise just unlink the entry.
+        if (garbageBytes > arenaUsed / 2 && arenaUsed > 4096) {
+            compact(t);
+        } else {
+            removeFromBuckets(t, id);
+        }
+    }
+
+    /**
+     * Returns the number of distinct strings.
+     */
+    synchronized int size()
+    {
+        return count;
+    }
+
+    /**
+     * Estimates the heap used by the dictionary in bytes.
+     */
+    synchronized long estimateHeapBytes()
+    {
+        Table t = table;
+        return 16L * 5 + t.arena().length + 4L * (t.offsets().length + refCounts.length
+                + buckets.length + freeIds.length);
+    }
+
+    // Appends the bytes to the arena as the entry with the given id, growing the arrays if needed.
+    private Table append(Table t, int id, byte[] bytes)
+    {
+        byte[] arena = t.arena();
+        int[] offsets = t.offsets();
+        int length = ArenaStrings.encodedLength(bytes.length);
+
+        if (arenaUsed + length > arena.length || id >= offsets.length) {
+            // Grown arrays are published as a new table; readers keep using the old one safely.
+            arena = Arrays.copyOf(arena, Math.max(arena.length + (arena.length >> 1), arenaUsed + length));
+            offsets = Arrays.copyOf(offsets, Math.max(offsets.length, id + 1 + (id >> 1)));
+            refCounts = Arrays.copyOf(refCounts, offsets.length);
+            t = new Table(arena, offsets);
+        }
+
+        offsets[id] = arenaUsed;
+        arenaUsed = ArenaStrings.write(arena, arenaUsed, bytes);
+        table = t;
+        return t;
+    }
+
+    // Deletes an entry from the linear probing table by re-inserting the rest of its cluster.
+    private void removeFromBuckets(Table t, int id)
+    {
+        int mask = buckets.length - 1;
+        int i = ArenaStrings.hashAt(t.arena(), t.offsets()[id]) & mask;
+        while (buckets[i] != id + 1) {
+            i = (i + 1) & mask;
+        }
+        buckets[i] = 0;
+
+        for (i = (i + 1) & mask; buckets[i] != 0; i = (i + 1) & mask) {
+            int moved = buckets[i];
+            buckets[i] = 0;
+            insert(t, moved - 1);
+        }
+    }
+
+    private void insert(Table t, int id)
+    {
+        int mask = buckets.length - 1;
+        int i = ArenaStrings.hashAt(t.arena(), t.offsets()[id]) & mask;
+        while (buckets[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        buckets[i] = id + 1;
+    }
+
+    private void rehash(Table t, int capacity)
+    {
+        buckets = new int[capacity];
+        for (int id = 0; id < nextId; id++) {
+            if (refCounts[id] > 0) {
+                insert(t, id);
+            }
+        }
+    }
+
+    // Copies the live entries into a new arena. The ids stay the same, only their offsets change,
+    // and the new arena is published together with the new offsets.
+    private void compact(Table t)
+    {
+        byte[] arena = new byte[Math.max(256, (arenaUsed - garbageBytes) * 3 / 2)];
+        int[] offsets = new int[t.offsets().length];
+        int used = 0;
+        for (int id = 0; id < nextId; id++) {
+            if (refCounts[id] > 0) {
+                int from = t.offsets()[id];
+                int length = ArenaStrings.encodedLengthAt(t.arena(), from);
+                System.arraycopy(t.arena(), from, arena, used, length);
+                offsets[id] = used;
+                used += length;
+            }
+        }
+
+        arenaUsed = used;
+        garbageBytes = 0;
+        Table compacted = new Table(arena, offsets);
+        table = compacted;
+        rehash(compacted, buckets.length);
+    }
+
+}
@@ -0,0 +1,30 @@
+package hu.uni.restlab.service;
+
+/**
+ * Thrown when the changes after a sync version can no longer be listed:
+ * the tombstones of that period are already compacted, or the version is
+ * from an earlier run of the application.
+ *
+ * The REST layer translates it to 410 Gone; the client must download the full list.
+ */
+public class SyncExpiredException extends RuntimeException {
+
+    private final long since;
+    private final long horizon;
+
+    public SyncExpiredException(long since, long horizon)
+    {
+        super("Sync version " + since + " has expired, the oldest possible is " + horizon + "; download the full list");
+        this.since = since;
+        this.horizon = horizon;
+    }
+
+    public long getSince() {
+        return since;
+    }
+
+    public long getHorizon() {
+        return horizon;
+    }
+
+}
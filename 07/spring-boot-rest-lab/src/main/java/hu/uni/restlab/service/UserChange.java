@@ -0,0 +1,26 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.model.User;
+
+/**
+ * A changed user in an incremental synchronization.
+ *
+ * @param id the id of the user
+ * @param version the version of the record (for a deleted user, its last version)
+ * @param user the current record, or null if the user was deleted (a tombstone)
+ */
+public record UserChange(
+        long id,
+        long version,
+        User user
+) {
+
+    /**
+     * Returns true if the user was deleted.
+     */
+    public boolean deleted()
+    {
+        return user == null;
+    }
+
+}
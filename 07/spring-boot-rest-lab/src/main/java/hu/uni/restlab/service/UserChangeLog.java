@@ -0,0 +1,227 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+/**
+ * Change log of the store for incremental (delta) synchronization.
+ *
+ * Every create, update and delete gets the next sync version. Only the latest
+ * version of each user is kept: the log maps sync version to user id, so its size
+ * is the number of users plus the deleted ones still remembered (tombstones), not
+ * the number of changes. The changes since a version are read in sync version
+ * order from the sorted map, and the records themselves from the store, so a
+ * client always receives the current state of a changed user.
+ *
+ * There is no global lock, like on the write path of the store: the sync version
+ * comes from an atomic counter, and the changes of one user are recorded inside
+ * compute() on its entry of the latest map, so they are ordered per user only.
+ * A reader returns the changes up to the highest version below every append still
+ * in progress, so a slow writer cannot make a client skip its change.
+ *
+ * Tombstones are kept for a retention period, then compacted (dropped oldest first,
+ * by the next sync request, never by a change, no background thread). A client whose
+ * last sync version is older than the newest dropped tombstone could have missed a
+ * delete and must download the full list again.
+ *
+ * The sync versions are not persisted: they start from the startup time (in 1/1024
+ * milliseconds), so the versions of an earlier run are always below the horizon
+ * of the current one and such clients are sent to a full download as well.
+ */
+class UserChangeLog {
+
+    private record Tombstone(long id, long version, long syncVersion, long deletedAt) { }
+
+    // An append in progress; its sync version is at least floor. Compared by identity.
+    private static final class Append {
+        final long floor;
+
+        Append(long floor) {
+            this.floor = floor;
+        }
+    }
+
+    // Approximate sizes with compressed oops: skip list node with its share of the index nodes,
+    // hash map node with its table slot, boxed longs, tombstone with its map and queue nodes.
+    private static final int LOG_ENTRY_BYTES = 24 + 8 + 16 + 16;
+    private static final int LATEST_ENTRY_BYTES = 32 + 4 + 16 + 16;
+    private static final int TOMBSTONE_BYTES = 40 + 32 + 4 + 16 + 24;
+
+    private final UserStore users;
+    private final long retentionMillis;
+
+    private final AtomicLong version;                                  // sync version of the last change
+    private final AtomicLong horizon;                                  // syncs from before this are not possible
+    private final ConcurrentHashMap<Long, Long> latest = new ConcurrentHashMap<>();                // user id -> sync version of its last change
+    private final ConcurrentNavigableMap<Long, Long> log = new ConcurrentSkipListMap<>();          // sync version -> user id
+    private final ConcurrentHashMap<Long, Tombstone> tombstones = new ConcurrentHashMap<>();       // user id -> tombstone
+    private final Queue<Tombstone> tombstoneQueue = new ConcurrentLinkedQueue<>();                 // in deletion order
+    private final Set<Append> appending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    UserChangeLog(UserStore users, long retentionMillis) {
+        this.users = users;
+        this.retentionMillis = retentionMillis;
+        this.version = new AtomicLong(System.currentTimeMillis() << 10);
+        this.horizon = new AtomicLong(version.get());
+    }
+
+    /**
+     * Records that a user was created or updated. Call it after the change is visible in the store.
+     *
+     * A put that arrives after a later change of the same user is dropped: after the delete
+     * (ids are never reused) it would move the user's entry past its tombstone and the delete
+     * would never be sent; after a newer version that change records itself.
+     */
+    void recordPut(User user)
+    {
+        append(user.getId(), syncVersion -> {
+            User current = users.get(user.getId());
+            return !tombstones.containsKey(user.getId()) && current != null && current.getVersion() <= user.getVersion();
+        });
+    }
+
+    /**
+     * Records that a user was deleted. Call it after the user is removed from the store.
+     */
+    void recordDelete(User user)
+    {
+        long now = System.currentTimeMillis();
+        append(user.getId(), syncVersion -> {
+            Tombstone tombstone = new Tombstone(user.getId(), user.getVersion(), syncVersion, now);
+            tombstones.put(user.getId(), tombstone);
+            tombstoneQueue.add(tombstone);
+            return true;
+        });
+    }
+
+    /**
+     * Returns the changes after a sync version, oldest first.
+     *
+     * @param since the sync version the client has, or 0 for a full download (every current user)
+     * @param limit the maximum number of changes
+     * @return the changes and the sync version to continue from
+     * @throws SyncExpiredException if changes after the version may already be compacted
+     */
+    UserChangePage since(long since, int limit)
+    {
+        compact(System.currentTimeMillis());
+
+        // Every change up to this version is in the log: the ones after the floor of an append
+        // still in progress are left for the next request.
+        long visible = version.get();
+        for (Append append : appending) {
+            visible = Math.min(visible, append.floor - 1);
+        }
+
+        if (since != 0 && (since < horizon.get() || since > version.get())) {
+            throw new SyncExpiredException(since, horizon.get());
+        }
+        // The client may already have seen a version above an append that started before it.
+        visible = Math.max(visible, since);
+
+        List<UserChange> changes = new ArrayList<>();
+        long through = visible;
+        boolean more = false;
+        for (Map.Entry<Long, Long> entry : log.subMap(since, false, visible, true).entrySet()) {
+            if (changes.size() == limit) {
+                more = true;
+                break;
+            }
+            through = entry.getKey();
+
+            // A record may be newer than its sync version (it was changed again meanwhile):
+            // that change has a later version, the client just gets it twice.
+            Tombstone tombstone = tombstones.get(entry.getValue());
+            if (tombstone != null && tombstone.syncVersion() == entry.getKey()) {
+                changes.add(new UserChange(tombstone.id(), tombstone.version(), null));
+            } else {
+                User user = users.get(entry.getValue());
+                if (user != null) {
+                    changes.add(new UserChange(user.getId(), user.getVersion(), user));
+                }
+                // Else the user has just been deleted; the delete gets a later version and comes next time.
+            }
+        }
+        if (!more) {
+            through = visible;
+        }
+
+        // A tombstone compacted by a concurrent request may have been skipped.
+        if (since != 0 && since < horizon.get()) {
+            throw new SyncExpiredException(since, horizon.get());
+        }
+        return new UserChangePage(changes, through, more);
+    }
+
+    /**
+     * Returns the estimated heap size of the log, its latest map and the tombstones in bytes.
+     */
+    long estimateHeapBytes()
+    {
+        return (long) log.size() * LOG_ENTRY_BYTES
+                + (long) latest.size() * LATEST_ENTRY_BYTES
+                + (long) tombstones.size() * TOMBSTONE_BYTES;
+    }
+
+    // Gives the user the next sync version, and drops its previous entry. The recorder is called with
+    // the new version while the user's entry is locked; if it returns false, nothing is recorded.
+    private void append(long id, LongPredicate recorder)
+    {
+        Append append = new Append(version.get() + 1);
+        appending.add(append);
+        try {
+            latest.compute(id, (key, previous) -> {
+                long syncVersion = version.incrementAndGet();
+                if (!recorder.test(syncVersion)) {
+                    return previous;
+                }
+                if (previous != null) {
+                    log.remove(previous);
+                }
+                log.put(syncVersion, id);
+                return syncVersion;
+            });
+        } finally {
+            appending.remove(append);
+        }
+    }
+
+    // Drops the tombstones older than the retention; the horizon moves past the last dropped one.
+    // Runs in one request at a time; the others do not wait for it.
+    private void compact(long now)
+    {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long cutoff = now - retentionMillis;
+            while (!tombstoneQueue.isEmpty() && tombstoneQueue.peek().deletedAt() < cutoff) {
+                Tombstone tombstone = tombstoneQueue.poll();
+                latest.computeIfPresent(tombstone.id(), (id, syncVersion) -> {
+                    if (!tombstones.remove(id, tombstone)) {
+                        return syncVersion;
+                    }
+                    log.remove(tombstone.syncVersion());
+                    return null;
+                });
+                horizon.accumulateAndGet(tombstone.syncVersion(), Math::max);
+            }
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package hu.uni.restlab.service;
+
+import java.util.List;
+
+/**
+ * The changes of the store after a sync version.
+ *
+ * @param changes the created, updated and deleted users, in the order of their last change
+ * @param version the sync version to continue from (the "since" of the next request)
+ * @param hasMore true if the limit was reached and more changes follow
+ */
+public record UserChangePage(
+        List<UserChange> changes,
+        long version,
+        boolean hasMore
+) { }
@@ -0,0 +1,126 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.model.User;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Concurrent unique index from normalized email address to user id.
+ *
+ * Every change that gives a user an email is published to the store inside
+ * compute() on that email's entry. The map locks the entry meanwhile, so two
+ * writers can never both take the same address, and the index is never behind
+ * the store. An entry whose user no longer has the address (it was just changed
+ * or deleted) counts as free and is cleaned up by the writer that changed it.
+ */
+class UserEmailIndex {
+
+    // Approximate sizes with compressed oops: map node with its table slot, boxed id.
+    private static final int NODE_BYTES = 32 + 4;
+    private static final int ID_BYTES = 16;
+
+    private final ConcurrentHashMap<String, Long> ids = new ConcurrentHashMap<>();
+    private final UserStore users;
+
+    UserEmailIndex(UserStore users) {
+        this.users = users;
+    }
+
+    /**
+     * Normalizes an email for comparison: trimmed and lower-cased, or null.
+     */
+    static String normalize(String email)
+    {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the user with the given email, in O(1).
+     */
+    User find(String email)
+    {
+        String key = normalize(email);
+        Long id = key == null ? null : ids.get(key);
+        if (id == null) {
+            return null;
+        }
+        User user = users.get(id);
+        return user != null && key.equals(normalize(user.getEmail())) ? user : null;
+    }
+
+    /**
+     * Adds an entry without checks (used when loading the store).
+     */
+    void add(User user)
+    {
+        String key = normalize(user.getEmail());
+        if (key != null) {
+            ids.put(key, user.getId());
+        }
+    }
+
+    /**
+     * Gives the email to the user and runs the store mutation while the entry is locked.
+     *
+     * @param email the new email of the user
+     * @param id the user's id
+     * @param publish the store mutation; returns false if it did not happen (e.g. a failed CAS)
+     * @return the result of publish
+     * @throws DuplicateEmailException if another user has the email
+     */
+    boolean claim(String email, long id, BooleanSupplier publish)
+    {
+        String key = normalize(email);
+        if (key == null) {
+            return publish.getAsBoolean();
+        }
+
+        boolean[] published = new boolean[1];
+        ids.compute(key, (k, owner) -> {
+            if (owner != null && owner != id && hasEmail(owner, k)) {
+                throw new DuplicateEmailException(email);
+            }
+            published[0] = publish.getAsBoolean();
+            return published[0] ? Long.valueOf(id) : owner;
+        });
+        return published[0];
+    }
+
+    /**
+     * Drops the entry of an email the user no longer has (after an update or delete).
+     */
+    void release(String email, long id)
+    {
+        String key = normalize(email);
+        if (key != null) {
+            // The check runs under the entry lock, so a concurrent claim of the same
+            // address by the same user (changing it back) is never undone.
+            ids.computeIfPresent(key, (k, owner) -> owner == id && !hasEmail(owner, k) ? null : owner);
+        }
+    }
+
+    /**
+     * Estimates the heap used by the index: per address a map node, the boxed id and the
+     * normalized copy of the address. It walks the whole index.
+     *
+     * @return the estimated size in bytes
+     */
+    long estimateHeapBytes()
+    {
+        long bytes = 0;
+        for (String key : ids.keySet()) {
+            bytes += NODE_BYTES + ID_BYTES + ConcurrentMapUserStore.stringBytes(key);
+        }
+        return bytes;
+    }
+
+    // Tells whether the user with the given id currently has the email.
+    private boolean hasEmail(long id, String key)
+    {
+        User user = users.get(id);
+        return user != null && key.equals(normalize(user.getEmail()));
+    }
+
+}
@@ -0,0 +1,16 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.model.User;
+
+import java.util.List;
+
+/**
+ * One page of users returned by a keyset (cursor based) query.
+ *
+ * @param users the users on this page
+ * @param nextCursor the cursor of the next page, or null if this is the last page
+ */
+public record UserPage(
+        List<User> users,
+        String nextCursor
+) { }
@@ -0,0 +1,57 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.model.User;
+
+import java.util.Locale;
+
+/**
+ * Structured filter over the users. Every set criterion must hold (AND);
+ * a null criterion is ignored.
+ *
+ * @param nameContains case-insensitive substring of the name
+ * @param emailDomain the domain of the email (the part after '@'), case-insensitive
+ * @param idFrom the smallest id (inclusive)
+ * @param idTo the largest id (inclusive)
+ */
+public record UserQuery(
+        String nameContains,
+        String emailDomain,
+        Long idFrom,
+        Long idTo
+) {
+
+    public UserQuery {
+        nameContains = nameContains == null || nameContains.isEmpty() ? null : nameContains.toLowerCase(Locale.ROOT);
+        emailDomain = emailDomain == null || emailDomain.isEmpty() ? null : emailDomain.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Tells whether no criterion is set.
+     */
+    public boolean isEmpty()
+    {
+        return nameContains == null && emailDomain == null && idFrom == null && idTo == null;
+    }
+
+    /**
+     * Tells whether the user satisfies every criterion.
+     */
+    public boolean matches(User user)
+    {
+        long id = user.getId();
+        if ((idFrom != null && id < idFrom) || (idTo != null && id > idTo)) {
+            return false;
+        }
+        if (nameContains != null
+                && (user.getName() == null || !user.getName().toLowerCase(Locale.ROOT).contains(nameContains))) {
+            return false;
+        }
+        if (emailDomain != null) {
+            String email = user.getEmail();
+            int at = email == null ? -1 : email.lastIndexOf('@');
+            return at >= 0 && email.substring(at + 1).equalsIgnoreCase(emailDomain);
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,114 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Evaluates a UserQuery over the store, in id order.
+ *
+ * The id space is cut into segments of consecutive ids. Small ranges are scanned
+ * sequentially; large ones are scanned in waves of segments with fork/join, so a
+ * query over millions of users uses all cores. A wave stops the scan as soon as
+ * the page is full, so the work stays proportional to the requested page.
+ */
+class UserQueryEngine {
+
+    // Number of consecutive ids scanned by one fork/join leaf task.
+    static final int SEGMENT_SIZE = 4096;
+
+    // Below this many ids in the range the query runs on the calling thread.
+    static final int PARALLEL_THRESHOLD = 65536;
+
+    private final UserStore users;
+    private final ForkJoinPool pool;
+
+    UserQueryEngine(UserStore users) {
+        this.users = users;
+        this.pool = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Returns up to limit matching users with an id greater than after.
+     *
+     * @param query the criteria
+     * @param after the id of the last user of the previous page, or 0 for the first page
+     * @param limit the maximum number of users to return
+     * @param maxId the highest id issued so far
+     * @return the matching users in id order, at most limit + 1 (the extra one tells that more follow)
+     */
+    List<User> run(UserQuery query, long after, int limit, long maxId)
+    {
+        long from = Math.max(after + 1, query.idFrom() != null ? Math.max(1, query.idFrom()) : 1);
+        long to = query.idTo() != null ? Math.min(maxId, query.idTo()) : maxId;
+        int wanted = limit + 1;
+
+        if (to - from + 1 < PARALLEL_THRESHOLD) {
+            return scan(query, from, to, wanted);
+        }
+
+        // Scan the range wave by wave; each wave keeps every worker busy with a few segments.
+        long waveSize = (long) SEGMENT_SIZE * pool.getParallelism() * 4;
+        List<User> found = new ArrayList<>();
+        for (long start = from; start <= to && found.size() < wanted; start += waveSize) {
+            long end = Math.min(to, start + waveSize - 1);
+            found.addAll(pool.invoke(new ScanTask(query, start, end, wanted - found.size())));
+        }
+        return found;
+    }
+
+    // Looks up the ids from..to (inclusive) one by one and keeps at most max matches.
+    private List<User> scan(UserQuery query, long from, long to, int max)
+    {
+        List<User> found = new ArrayList<>();
+        for (long id = from; id <= to && found.size() < max; id++) {
+            User user = users.get(id);
+            if (user != null && query.matches(user)) {
+                found.add(user);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Scans an id range by splitting it in halves down to single segments.
+     * The left half comes first in id order, so its matches are kept first.
+     */
+    private final class ScanTask extends RecursiveTask<List<User>> {
+
+        private final UserQuery query;
+        private final long from;
+        private final long to;
+        private final int max;
+
+        ScanTask(UserQuery query, long from, long to, int max) {
+            this.query = query;
+            this.from = from;
+            this.to = to;
+            this.max = max;
+        }
+
+        @Override
+        protected List<User> compute()
+        {
+            if (to - from + 1 <= SEGMENT_SIZE) {
+                return scan(query, from, to, max);
+            }
+
+            long mid = from + (to - from) / 2;
+            ScanTask right = new ScanTask(query, mid + 1, to, max);
+            right.fork();
+            List<User> found = new ScanTask(query, from, mid, max).compute();
+            List<User> rightFound = right.join();
+
+            for (int i = 0; i < rightFound.size() && found.size() < max; i++) {
+                found.add(rightFound.get(i));
+            }
+            return found;
+        }
+    }
+
+}
@@ -0,0 +1,358 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.model.User;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+
+/**
+ * In-memory inverted index of trigrams (3 character substrings) of the users'
+ * normalized name and email, for substring search.
+ *
+ * A query word of at least 3 characters can only match users that appear in the
+ * posting list of each of its trigrams, so the search intersects those lists
+ * instead of scanning all users, and checks only the survivors against the store. Posting lists
+ * are append-only primitive arrays; entries left behind by updates and deletes are
+ * only counted and dropped in bulk later, so a mutation never shifts a large array.
+ */
+class UserSearchIndex {
+
+    static final int GRAM = 3;
+
+    // Approximate sizes with compressed oops: map node with its table slot, Postings object.
+    private static final int NODE_BYTES = 32 + 4;
+    private static final int POSTINGS_BYTES = 32;
+
+    private final ConcurrentHashMap<String, Postings> postings = new ConcurrentHashMap<>();
+    private final UserStore users;
+
+    UserSearchIndex(UserStore users) {
+        this.users = users;
+    }
+
+    /**
+     * Normalizes text for indexing and matching: lower-cased, or empty if null.
+     */
+    static String normalize(String value)
+    {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Indexes a new user.
+     */
+    void add(User user)
+    {
+        for (String gram : grams(user)) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(user.getId());
+        }
+    }
+
+    /**
+     * Moves a user from the trigrams of its previous version to those of the new one.
+     */
+    void update(User previous, User replacement)
+    {
+        Set<String> before = grams(previous);
+        Set<String> after = grams(replacement);
+        for (String gram : after) {
+            if (!before.contains(gram)) {
+                postings.computeIfAbsent(gram, g -> new Postings()).add(replacement.getId());
+            }
+        }
+        for (String gram : before) {
+            if (!after.contains(gram)) {
+                retire(gram);
+            }
+        }
+    }
+
+    /**
+     * Unindexes a deleted user.
+     */
+    void remove(User user)
+    {
+        for (String gram : grams(user)) {
+            retire(gram);
+        }
+    }
+
+    /**
+     * Finds the users whose name or email contains every word of the query,
+     * ranked by relevance (see {@link #score(String, String, List)}).
+     *
+     * @param query the words to look for, separated by spaces
+     * @param offset the number of top results to skip
+     * @param limit the maximum number of users to return
+     * @return the requested part of the ranked result and the total number of matches
+     * @throws IllegalArgumentException if no word of the query is at least 3 characters long
+     */
+    UserSearchPage search(String query, int offset, int limit)
+    {
+        List<String> terms = Arrays.stream(normalize(query).trim().split("\\s+"))
+                .filter(term -> !term.isEmpty())
+                .distinct()
+                .toList();
+
+        // Every trigram of every word must occur: intersect their posting lists, shortest first,
+        // so the candidates shrink fast and the store is only touched for the survivors.
+        List<Postings> lists = new ArrayList<>();
+        for (String term : terms) {
+            for (int i = 0; i + GRAM <= term.length(); i++) {
+                Postings list = postings.get(term.substring(i, i + GRAM));
+                if (list == null) {
+                    return new UserSearchPage(List.of(), 0);
+                }
+                if (!lists.contains(list)) {
+                    lists.add(list);
+                }
+            }
+        }
+        if (lists.isEmpty()) {
+            throw new IllegalArgumentException("The query needs a word of at least " + GRAM + " characters");
+        }
+        lists.sort(Comparator.comparingInt(Postings::size));
+
+        long[] candidates = lists.get(0).snapshot();
+        for (int i = 1; i < lists.size() && candidates.length > 0; i++) {
+            candidates = lists.get(i).retain(candidates);
+        }
+
+        // Keep only the best offset + limit matches in a min-heap (worst on top).
+        Comparator<Scored> ranking = Comparator.comparingInt(Scored::score).reversed()
+                .thenComparing(Scored::name)
+                .thenComparingLong(scored -> scored.user().getId());
+        PriorityQueue<Scored> top = new PriorityQueue<>(ranking.reversed());
+        int wanted = offset + limit;
+        long total = 0;
+
+        for (int i = 0; i < candidates.length; i++) {
+            User user = users.get(candidates[i]);
+            if (user == null) {
+                continue;
+            }
+            String name = normalize(user.getName());
+            int score = score(name, normalize(user.getEmail()), terms);
+            if (score > 0) {
+                total++;
+                Scored scored = new Scored(user, score, name);
+                if (top.size() < wanted) {
+                    top.add(scored);
+                } else if (ranking.compare(scored, top.peek()) < 0) {
+                    top.poll();
+                    top.add(scored);
+                }
+            }
+        }
+
+        List<Scored> ranked = new ArrayList<>(top);
+        ranked.sort(ranking);
+        List<User> page = ranked.stream()
+                .skip(offset)
+                .map(Scored::user)
+                .toList();
+        return new UserSearchPage(page, total);
+    }
+
+    /**
+     * Relevance of a user for the query words, 0 if a word is missing from both fields.
+     * Per word: exact name 100, name prefix 50, prefix of a later word of the name 30,
+     * elsewhere in the name 10, email prefix 20, elsewhere in the email 5.
+     *
+     * @param name the normalized name
+     * @param email the normalized email
+     * @param terms the normalized query words
+     */
+    static int score(String name, String email, List<String> terms)
+    {
+        int score = 0;
+        for (String term : terms) {
+            int termScore;
+            if (name.equals(term)) {
+                termScore = 100;
+            } else if (name.startsWith(term)) {
+                termScore = 50;
+            } else if (name.contains(term)) {
+                termScore = isWordStart(name, term) ? 30 : 10;
+            } else if (email.startsWith(term)) {
+                termScore = 20;
+            } else if (email.contains(term)) {
+                termScore = 5;
+            } else {
+                return 0;
+            }
+            score += termScore;
+        }
+        return score;
+    }
+
+    /**
+     * Estimates the heap used by the index: per trigram a map node, the trigram string and
+     * its posting list (including the unused capacity and the stale entries).
+     *
+     * @return the estimated size in bytes
+     */
+    long estimateHeapBytes()
+    {
+        long bytes = 0;
+        for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+            bytes += NODE_BYTES + POSTINGS_BYTES + ConcurrentMapUserStore.stringBytes(entry.getKey())
+                    + entry.getValue().arrayBytes();
+        }
+        return bytes;
+    }
+
+    // Tells whether the term occurs right after a space in the text.
+    private static boolean isWordStart(String text, String term)
+    {
+        for (int i = text.indexOf(term); i > 0; i = text.indexOf(term, i + 1)) {
+            if (text.charAt(i - 1) == ' ') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Marks one entry of the trigram's posting list as stale, and cleans the list up
+    // once a quarter of it is stale (amortized O(1) per mutation).
+    private void retire(String gram)
+    {
+        Postings list = postings.get(gram);
+        if (list != null && list.retire()) {
+            list.compact(id -> {
+                User user = users.get(id);
+                return user != null
+                        && (normalize(user.getName()).contains(gram) || normalize(user.getEmail()).contains(gram));
+            });
+        }
+    }
+
+    // The distinct trigrams of the user's name and email.
+    private static Set<String> grams(User user)
+    {
+        Set<String> grams = new HashSet<>();
+        for (String field : new String[] { normalize(user.getName()), normalize(user.getEmail()) }) {
+            for (int i = 0; i + GRAM <= field.length(); i++) {
+                grams.add(field.substring(i, i + GRAM));
+            }
+        }
+        return grams;
+    }
+
+    private record Scored(User user, int score, String name) {
+    }
+
+    /**
+     * Posting list of one trigram: the ids of the users containing it.
+     *
+     * Ids are appended (new users have growing ids, so the array is almost always sorted)
+     * and may contain stale or duplicate entries until the next compaction.
+     */
+    private static final class Postings {
+
+        private long[] ids = new long[4];
+        private int size;
+        private int stale;
+        private boolean sorted = true;
+
+        synchronized void add(long id)
+        {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            if (size > 0 && ids[size - 1] > id) {
+                sorted = false;
+            }
+            ids[size++] = id;
+        }
+
+        synchronized int size()
+        {
+            return size;
+        }
+
+        // The heap used by the id array (header + capacity).
+        synchronized long arrayBytes()
+        {
+            return 16 + 8L * ids.length;
+        }
+
+        // Counts a stale entry; returns true if the list is due for compaction.
+        synchronized boolean retire()
+        {
+            return ++stale > 16 && stale * 4 > size;
+        }
+
+        // Keeps the distinct ids that still match.
+        synchronized void compact(LongPredicate live)
+        {
+            sort();
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                long id = ids[i];
+                if ((kept == 0 || ids[kept - 1] != id) && live.test(id)) {
+                    ids[kept++] = id;
+                }
+            }
+            size = kept;
+            stale = 0;
+            if (ids.length > 16 && kept < ids.length / 2) {
+                ids = Arrays.copyOf(ids, kept + (kept >> 1) + 1);
+            }
+        }
+
+        // Returns the distinct ids in ascending order.
+        synchronized long[] snapshot()
+        {
+            sort();
+            long[] copy = new long[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (n == 0 || copy[n - 1] != ids[i]) {
+                    copy[n++] = ids[i];
+                }
+            }
+            return n == size ? copy : Arrays.copyOf(copy, n);
+        }
+
+        // Returns the given ascending ids that are also in this list. Both are sorted, so this is
+        // a merge that gallops (exponential + binary search) over the longer list: O(c log(n / c)).
+        synchronized long[] retain(long[] candidates)
+        {
+            sort();
+            long[] kept = new long[candidates.length];
+            int n = 0;
+            int from = 0;
+            for (long id : candidates) {
+                int step = 1;
+                int to = from;
+                while (to < size && ids[to] < id) {
+                    from = to + 1;
+                    to += step;
+                    step <<= 1;
+                }
+                int found = Arrays.binarySearch(ids, from, Math.min(to + 1, size), id);
+                if (found >= 0) {
+                    kept[n++] = id;
+                    from = found;
+                } else {
+                    from = -found - 1;
+                }
+                if (from >= size) {
+                    break;
+                }
+            }
+            return Arrays.copyOf(kept, n);
+        }
+
+        private void sort()
+        {
+            if (!sorted) {
+                Arrays.sort(ids, 0, size);
+                sorted = true;
+            }
+        }
+    }
+
+}
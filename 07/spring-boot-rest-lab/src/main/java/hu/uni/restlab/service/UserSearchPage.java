@@ -0,0 +1,16 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.model.User;
+
+import java.util.List;
+
+/**
+ * One page of a relevance-ranked search.
+ *
+ * @param users the users on this page, best match first
+ * @param total the number of all matching users
+ */
+public record UserSearchPage(
+        List<User> users,
+        long total
+) { }
@@ -2,11 +2,14 @@ package hu.uni.restlab.service;
 
 import hu.uni.restlab.controller.UserResponse;
 import hu.uni.restlab.model.User;
+import hu.uni.restlab.persistence.UserStorePersistence;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 /**
  * Service class for managing user business logic.
@@ -18,25 +21,116 @@ import java.util.concurrent.atomic.AtomicLong;
 @Service
 public class UserService {
 
-    // For demo purposes the users are stored in-memory store by using HashMap.
+    // For demo purposes the users are stored in an in-memory store (a hash map or the compact columnar engine).
     // Note: a real application would persist them in a database.
-    private final Map<Long, User> users = new ConcurrentHashMap<>();
+    private final UserStore users;
 
     // AtomicLong provides a simple thread-safe id generator.
     // Note: normally the database would manage identifiers.
     private final AtomicLong idSeq = new AtomicLong(0);
 
+    // Global modification counter and time, bumped after every mutation of the store.
+    // Together they identify a state of the whole collection (ETag / Last-Modified).
+    private final AtomicLong modificationCount = new AtomicLong(0);
+    private volatile long lastModified = System.currentTimeMillis();
+
+    // One sorted index per supported sort order, kept in sync on every mutation.
+    // They make ordered, paginated listing cheap without sorting the whole map.
+    private final Map<UserSort, UserSortIndex> sortIndexes = new EnumMap<>(UserSort.class);
+
+    // Unique index of the email addresses, for duplicate checks and O(1) lookup by email.
+    private final UserEmailIndex emailIndex;
+
+    // Trigram index of names and emails for substring search.
+    private final UserSearchIndex searchIndex;
+
+    // Evaluates structured filters over the store, in parallel for large stores.
+    private final UserQueryEngine queryEngine;
+
+    // Optional write-ahead log + snapshots; a no-op unless enabled in the configuration.
+    private final UserStorePersistence persistence;
+
+    // Sync versions and tombstones for incremental synchronization (changes since a version).
+    private final UserChangeLog changeLog;
+
     /**
-     * Constructor seeds the in-memory store with a few demo users.
+     * Creates a purely in-memory store seeded with a few demo users.
      */
     public UserService()
     {
-        // Populate the map with demo data.
-        long id1 = idSeq.incrementAndGet();
-        users.put(id1, new User(id1, "Alice", "alice@example.com"));
+        this(UserStore.create("map"), UserStorePersistence.disabled());
+    }
 
-        long id2 = idSeq.incrementAndGet();
-        users.put(id2, new User(id2, "Bob", "bob@example.com"));
+    /**
+     * Constructor restores the stored users when persistence is enabled,
+     * otherwise (or on the very first start) seeds the store with a few demo users.
+     *
+     * @param engine the name of the storage engine, see {@link UserStore#create(String)}
+     * @param persistence the durability component
+     * @param tombstoneRetentionSeconds how long deleted users are remembered for incremental sync
+     */
+    @Autowired
+    public UserService(@Value("${user-store.engine:map}") String engine,
+                       UserStorePersistence persistence,
+                       @Value("${user-store.sync.tombstone-retention-seconds:604800}") long tombstoneRetentionSeconds)
+    {
+        this(UserStore.create(engine), persistence, tombstoneRetentionSeconds * 1000);
+    }
+
+    /**
+     * Constructor with an explicit storage engine, remembering deleted users for a week.
+     *
+     * @param users the empty store to keep the users in
+     * @param persistence the durability component
+     */
+    public UserService(UserStore users, UserStorePersistence persistence)
+    {
+        this(users, persistence, 7L * 24 * 60 * 60 * 1000);
+    }
+
+    /**
+     * Constructor with an explicit storage engine and tombstone retention.
+     *
+     * @param users the empty store to keep the users in
+     * @param persistence the durability component
+     * @param tombstoneRetentionMillis how long deleted users are remembered for incremental sync
+     */
+    public UserService(UserStore users, UserStorePersistence persistence, long tombstoneRetentionMillis)
+    {
+        this.users = users;
+        this.emailIndex = new UserEmailIndex(users);
+        this.searchIndex = new UserSearchIndex(users);
+        this.queryEngine = new UserQueryEngine(users);
+        this.changeLog = new UserChangeLog(users, tombstoneRetentionMillis);
+        this.persistence = persistence;
+
+        for (UserSort sort : UserSort.values()) {
+            sortIndexes.put(sort, new UserSortIndex(sort));
+        }
+
+        if (persistence.isEnabled()) {
+            // Load the latest snapshot + log tail, and continue the id sequence after the highest id.
+            UserStorePersistence.RecoveredState state = persistence.recover();
+            for (User user : state.users()) {
+                index(user);
+                users.put(user);
+                emailIndex.add(user);
+                searchIndex.add(user);
+                changeLog.recordPut(user);
+            }
+            idSeq.set(state.idHighWaterMark());
+            modificationCount.set(state.modificationCount());
+
+            persistence.start(users::iterator, idSeq::get, modificationCount::get);
+
+            if (!state.fresh()) {
+                return;
+            }
+        }
+
+        // Populate the store with demo data.
+        createUser("Alice", "alice@example.com");
+        createUser("Bob", "bob@example.com");
     }
 
     /**
@@ -46,11 +140,157 @@ public class UserService {
      */
     public List<User> findAllUsers()
     {
-        // Return all users sorted by the id property.
+        // The id index is already sorted, so no sorting is needed here.
         // Note: in real life this would be done via a database query.
-        return users.values().stream()
-                .sorted(Comparator.comparingLong(User::getId))
-                .toList();
+        return findUsers(UserSort.ID, null, Integer.MAX_VALUE).users();
+    }
+
+    /**
+     * Retrieves one page of users in the given order (keyset pagination).
+     *
+     * A page costs O(log n + limit) because it is read from a sorted index.
+     *
+     * @param sort the sort order
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the maximum number of users on the page
+     * @return the page of users and the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another sort order
+     */
+    public UserPage findUsers(UserSort sort, String after, int limit)
+    {
+        return sortIndexes.get(sort).page(users, after, limit);
+    }
+
+    /**
+     * Retrieves one page of the users matching a structured filter, in id order.
+     *
+     * Large stores are scanned segment by segment with fork/join parallelism,
+     * small ones sequentially; the scan stops once the page is full.
+     *
+     * @param query the filter criteria
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the maximum number of users on the page
+     * @return the page of users and the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public UserPage queryUsers(UserQuery query, String after, int limit)
+    {
+        long afterId = after == null ? 0 : UserSortIndex.Key.fromCursor(after, UserSort.ID).id();
+        List<User> found = queryEngine.run(query, afterId, limit, idSeq.get());
+
+        // One extra match was requested to tell whether there is a next page.
+        if (found.size() <= limit) {
+            return new UserPage(found, null);
+        }
+        List<User> page = found.subList(0, limit);
+        return new UserPage(page, new UserSortIndex.Key(null, page.get(limit - 1).getId()).toCursor(UserSort.ID));
+    }
+
+    /**
+     * Returns the global modification counter of the store.
+     *
+     * The counter is incremented after every create, update and delete,
+     * so an unchanged value means the collection has not changed.
+     * Read it before reading the data: then the value can only be older
+     * than the data, never newer.
+     *
+     * @return the current modification count
+     */
+    public long getModificationCount()
+    {
+        return modificationCount.get();
+    }
+
+    /**
+     * Returns the users created, updated or deleted after a sync version (delta sync).
+     *
+     * Costs O(log n + limit): the changes are read from a log ordered by sync version,
+     * which keeps only the last change of each user. Deleted users are returned as
+     * tombstones until they are compacted after the retention period.
+     *
+     * @param since the sync version returned by the previous sync, or 0 for a full download
+     * @param limit the maximum number of changes
+     * @return the changes and the sync version to continue from
+     * @throws SyncExpiredException if the version is too old (or from an earlier run): download the full list
+     */
+    public UserChangePage findChanges(long since, int limit)
+    {
+        return changeLog.since(since, limit);
+    }
+
+    /**
+     * Returns the time of the last mutation of the store.
+     *
+     * @return the modification time in epoch milliseconds
+     */
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    /**
+     * Suggests users whose name starts with the given prefix (case-insensitive),
+     * for autocomplete. Served from the name index in O(log n + limit).
+     *
+     * @param prefix the beginning of the name
+     * @param limit the maximum number of suggestions
+     * @return the matching users ordered by name
+     */
+    public List<User> suggestUsers(String prefix, int limit)
+    {
+        return sortIndexes.get(UserSort.NAME).prefix(users, prefix.toLowerCase(Locale.ROOT), limit);
+    }
+
+    /**
+     * Searches users whose name or email contains every word of the query,
+     * ranked by relevance (name matches first, then email matches).
+     *
+     * Served from a trigram index: only the users sharing the rarest trigram
+     * of the query are checked, not the whole store.
+     *
+     * @param query the words to search for; at least one must be 3+ characters long
+     * @param offset the number of top results to skip
+     * @param limit the maximum number of users to return
+     * @return the page of users and the total number of matches
+     * @throws IllegalArgumentException if every word of the query is too short
+     */
+    public UserSearchPage searchUsers(String query, int offset, int limit)
+    {
+        return searchIndex.search(query, offset, limit);
+    }
+
+    /**
+     * Returns memory statistics of the store.
+     *
+     * Note: the estimate walks the indexes (and the whole store for the map engine), so it costs O(n).
+     *
+     * @return the engine, the number of users and the estimated heap of the records and the indexes
+     */
+    public UserStoreStats getStoreStats()
+    {
+        int count = users.size();
+        long heapBytes = users.estimateHeapBytes();
+        long indexHeapBytes = emailIndex.estimateHeapBytes() + searchIndex.estimateHeapBytes()
+                + changeLog.estimateHeapBytes();
+        for (UserSortIndex index : sortIndexes.values()) {
+            indexHeapBytes += index.estimateHeapBytes();
+        }
+        double bytesPerUser = count == 0 ? 0 : (double) (heapBytes + indexHeapBytes) / count;
+        return new UserStoreStats(users.engine(), count, heapBytes, indexHeapBytes, bytesPerUser);
+    }
+
+    /**
+     * Returns a lazy stream over all users in the given order.
+     *
+     * Unlike findAllUsers() nothing is copied: the users are read from the
+     * sorted index one by one, so the caller can write them out in constant memory.
+     *
+     * @param sort the sort order
+     * @return stream of users
+     */
+    public Stream<User> streamUsers(UserSort sort)
+    {
+        return sortIndexes.get(sort).stream(users);
     }
 
     /**
@@ -64,21 +304,79 @@ public class UserService {
         return Optional.ofNullable(users.get(id));
     }
 
+    /**
+     * Finds a user by email address (case-insensitive), in O(1) via the email index.
+     *
+     * @param email the email address
+     * @return Optional containing the user if found, empty otherwise
+     */
+    public Optional<User> findUserByEmail(String email)
+    {
+        return Optional.ofNullable(emailIndex.find(email));
+    }
+
     /**
      * Creates a new user with the provided data.
      *
      * @param name the user's name
      * @param email the user's email address
      * @return the created user with assigned id
+     * @throws DuplicateEmailException if another user already has the email
      */
     public User createUser(String name, String email)
     {
-        // Generate a new id and construct the user.
-        long id = idSeq.incrementAndGet();
+        // Generate a new id and create the user with it.
+        return createUser(idSeq.incrementAndGet(), name, email);
+    }
+
+    /**
+     * Reserves a block of consecutive ids with a single atomic operation.
+     *
+     * Used by batch imports, so creating many users costs one update of the
+     * shared id sequence instead of one per user.
+     *
+     * @param count the number of ids to reserve
+     * @return the first id of the block; the block is [first, first + count)
+     */
+    public long reserveIds(int count)
+    {
+        return idSeq.getAndAdd(count) + 1;
+    }
+
+    /**
+     * Creates a new user with an id previously obtained from {@link #reserveIds(int)}.
+     *
+     * @param id the reserved id
+     * @param name the user's name
+     * @param email the user's email address
+     * @return the created user
+     * @throws DuplicateEmailException if another user already has the email
+     */
+    public User createUser(long id, String name, String email)
+    {
+        // Construct the user with the given id.
         User user = new User(id, name, email);
 
-        // Store the user in the map.
-        users.put(id, user);
+        // Index the user first, then store it (while holding its email) and log it.
+        index(user);
+        long stamp = persistence.beginMutation();
+        try {
+            emailIndex.claim(email, id, () -> {
+                users.put(user);
+                return true;
+            });
+            // Search-index it only once it is visible: a concurrent compaction of a shared
+            // posting list keeps only the ids it finds in the store.
+            searchIndex.add(user);
+            persistence.logPut(user);
+            markModified();
+            changeLog.recordPut(user);
+        } catch (DuplicateEmailException e) {
+            unindex(user);
+            throw e;
+        } finally {
+            persistence.endMutation(stamp);
+        }
 
         return user;
     }
@@ -90,19 +388,57 @@ public class UserService {
      * @param name the new name
      * @param email the new email address
      * @return Optional containing the updated user if found, empty otherwise
+     * @throws DuplicateEmailException if another user already has the new email
      */
     public Optional<User> updateUser(long id, String name, String email)
     {
-        // Check if the user exists.
-        if (!users.containsKey(id)) {
-            return Optional.empty();
-        }
+        return updateUser(id, name, email, null);
+    }
 
-        // Update the user data and replace it in the map.
-        User updated = new User(id, name, email);
-        users.put(id, updated);
+    /**
+     * Updates an existing user if it still has the expected version.
+     *
+     * The update is optimistic and lock-free: the current record is read, the next
+     * version is built and published with a compare-and-set on the map. If another
+     * writer replaced or removed the record in the meantime, the CAS fails and the
+     * whole step is retried with the fresh state, so no update is silently lost
+     * and a deleted user is never resurrected.
+     *
+     * @param id the user's id
+     * @param name the new name
+     * @param email the new email address
+     * @param expectedVersion the version the caller has seen, or null for an unconditional update
+     * @return Optional containing the updated user if found, empty otherwise
+     * @throws VersionConflictException if the stored version differs from the expected one
+     * @throws DuplicateEmailException if another user already has the new email
+     */
+    public Optional<User> updateUser(long id, String name, String email, Long expectedVersion)
+    {
+        while (true) {
+            User current = users.get(id);
+            if (current == null) {
+                return Optional.empty();
+            }
+            checkVersion(current, expectedVersion);
 
-        return Optional.of(updated);
+            // Build the next version and publish it only if the record is still the one we read
+            // (and nobody else has the new email).
+            User replacement = new User(id, name, email, current.getVersion() + 1, System.currentTimeMillis());
+            long stamp = persistence.beginMutation();
+            try {
+                if (emailIndex.claim(email, id, () -> users.replace(current, replacement))) {
+                    releaseOldEmail(current, replacement);
+                    persistence.logPut(replacement);
+                    reindex(current, replacement);
+                    searchIndex.update(current, replacement);
+                    markModified();
+                    changeLog.recordPut(replacement);
+                    return Optional.of(replacement);
+                }
+            } finally {
+                persistence.endMutation(stamp);
+            }
+        }
     }
 
     /**
@@ -113,11 +449,110 @@ public class UserService {
      */
     public boolean deleteUser(long id)
     {
-        // Remove the user from the map; remove returns the old value or null if missing.
-        User removed = users.remove(id);
+        return deleteUser(id, null);
+    }
 
-        // Return true if a user was actually removed.
-        return removed != null;
+    /**
+     * Deletes a user if it still has the expected version (optimistic, lock-free).
+     *
+     * @param id the user's id
+     * @param expectedVersion the version the caller has seen, or null for an unconditional delete
+     * @return true if the user was deleted, false if not found
+     * @throws VersionConflictException if the stored version differs from the expected one
+     */
+    public boolean deleteUser(long id, Long expectedVersion)
+    {
+        while (true) {
+            User current = users.get(id);
+            if (current == null) {
+                return false;
+            }
+            checkVersion(current, expectedVersion);
+
+            // Remove the record only if it was not replaced since we read it; otherwise retry.
+            long stamp = persistence.beginMutation();
+            try {
+                if (users.remove(current)) {
+                    emailIndex.release(current.getEmail(), id);
+                    persistence.logDelete(current);
+                    unindex(current);
+                    searchIndex.remove(current);
+                    markModified();
+                    changeLog.recordDelete(current);
+                    return true;
+                }
+            } finally {
+                persistence.endMutation(stamp);
+            }
+        }
+    }
+
+    // Throws if the caller expects a different version than the current one.
+    private static void checkVersion(User current, Long expectedVersion)
+    {
+        if (expectedVersion != null && current.getVersion() != expectedVersion) {
+            throw new VersionConflictException(current.getId(), expectedVersion, current.getVersion());
+        }
+    }
+
+    // Frees the previous email of the user if the update changed it.
+    private void releaseOldEmail(User previous, User replacement)
+    {
+        String before = UserEmailIndex.normalize(previous.getEmail());
+        if (before != null && !before.equals(UserEmailIndex.normalize(replacement.getEmail()))) {
+            emailIndex.release(previous.getEmail(), previous.getId());
+        }
+    }
+
+    // Moves a record from its previous position to the new one in every sort index.
+    private void reindex(User previous, User replacement)
+    {
+        for (UserSortIndex sortIndex : sortIndexes.values()) {
+            UserSortIndex.Key oldKey = sortIndex.keyOf(previous);
+            UserSortIndex.Key newKey = sortIndex.keyOf(replacement);
+            if (!oldKey.equals(newKey)) {
+                sortIndex.remove(oldKey);
+                sortIndex.add(newKey);
+            }
+        }
+
+        // A concurrent writer may have moved the record again meanwhile, interleaved with us.
+        // The store holds the truth: make sure its position is indexed and drop ours if stale.
+        // (Readers skip stale positions anyway, this only keeps the index from growing.)
+        User current = users.get(replacement.getId());
+        for (UserSortIndex sortIndex : sortIndexes.values()) {
+            UserSortIndex.Key newKey = sortIndex.keyOf(replacement);
+            if (current != null) {
+                sortIndex.add(sortIndex.keyOf(current));
+            }
+            if (current == null || !sortIndex.keyOf(current).equals(newKey)) {
+                sortIndex.remove(newKey);
+            }
+        }
+    }
+
+    // Records a mutation of the store. Called after the change is visible,
+    // so a reader never sees a new counter value together with old data.
+    private void markModified()
+    {
+        lastModified = System.currentTimeMillis();
+        modificationCount.incrementAndGet();
+    }
+
+    // Adds the user to every sort index.
+    private void index(User user)
+    {
+        for (UserSortIndex sortIndex : sortIndexes.values()) {
+            sortIndex.add(sortIndex.keyOf(user));
+        }
+    }
+
+    // Removes the user from every sort index.
+    private void unindex(User user)
+    {
+        for (UserSortIndex sortIndex : sortIndexes.values()) {
+            sortIndex.remove(sortIndex.keyOf(user));
+        }
     }
 
     /**
@@ -0,0 +1,56 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.model.User;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Supported sort orders of the user list.
+ *
+ * Every sort order has its own sorted index in the UserService.
+ * Ties (e.g. two users with the same name) are broken by the id,
+ * so the order is always total and stable between pages.
+ */
+public enum UserSort {
+
+    ID(user -> null),
+    NAME(User::getName),
+    EMAIL(User::getEmail);
+
+    private final Function<User, String> keyExtractor;
+
+    UserSort(Function<User, String> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * Returns the normalized (lower-case) sort key of the user.
+     *
+     * @param user the user
+     * @return the sort key, or null when the order is by id only
+     */
+    public String sortKey(User user)
+    {
+        String value = keyExtractor.apply(user);
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parses the value of the ?sort= query parameter (case-insensitive).
+     *
+     * @param value the parameter value, e.g. "id", "name" or "email"
+     * @return the matching sort order
+     * @throws IllegalArgumentException if the value is not supported
+     */
+    public static UserSort fromParam(String value)
+    {
+        for (UserSort sort : values()) {
+            if (sort.name().equalsIgnoreCase(value)) {
+                return sort;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported sort: " + value + " (use id, name or email)");
+    }
+
+}
@@ -0,0 +1,203 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.model.User;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Concurrent sorted index of users for one sort order.
+ *
+ * The index is a skip list keyed by (sort key, id), so a page starting
+ * after a given position costs O(log n + page size) instead of a full sort.
+ * The UserService keeps it up to date on every create, update and delete.
+ */
+class UserSortIndex {
+
+    /**
+     * Position of a user in the index: the normalized sort key and the id as tie-breaker.
+     */
+    record Key(String value, long id) implements Comparable<Key> {
+
+        private static final Comparator<Key> ORDER = Comparator
+                .comparing(Key::value, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                .thenComparingLong(Key::id);
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+
+        /**
+         * Encodes the key as an opaque, URL-safe cursor string. The cursor names the sort order
+         * too, because a position is only meaningful in the order it was taken from.
+         */
+        String toCursor(UserSort sort)
+        {
+            String raw = sort.name() + ":" + id + (value == null ? "" : ":" + value);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Decodes a cursor created by {@link #toCursor(UserSort)}.
+         *
+         * @param sort the order the cursor is used with
+         * @throws IllegalArgumentException if the cursor is malformed or was taken from another order
+         */
+        static Key fromCursor(String cursor, UserSort sort)
+        {
+            String raw;
+            try {
+                raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+
+            int sortEnd = raw.indexOf(':');
+            if (sortEnd < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            if (!raw.substring(0, sortEnd).equals(sort.name())) {
+                throw new IllegalArgumentException("The cursor belongs to another sort order: " + cursor);
+            }
+            int idEnd = raw.indexOf(':', sortEnd + 1);
+            try {
+                if (idEnd < 0) {
+                    return new Key(null, Long.parseLong(raw.substring(sortEnd + 1)));
+                }
+                return new Key(raw.substring(idEnd + 1), Long.parseLong(raw.substring(sortEnd + 1, idEnd)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+    }
+
+    // Approximate sizes with compressed oops: a skip list node with its share of the index
+    // levels (one index node per three entries on average), and the Key record.
+    private static final int NODE_BYTES = 24 + 8;
+    private static final int KEY_BYTES = 24;
+
+    private final UserSort sort;
+
+    // Only the positions are indexed; the records themselves are looked up in the store,
+    // so the index never keeps a second copy of a user alive.
+    private final ConcurrentSkipListSet<Key> entries = new ConcurrentSkipListSet<>();
+
+    UserSortIndex(UserSort sort) {
+        this.sort = sort;
+    }
+
+    Key keyOf(User user) {
+        return new Key(sort.sortKey(user), user.getId());
+    }
+
+    void add(Key key) {
+        entries.add(key);
+    }
+
+    void remove(Key key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Returns a lazy, weakly consistent stream over all users in this order.
+     *
+     * @param store the store the positions are resolved against
+     */
+    Stream<User> stream(UserStore store) {
+        return entries.stream()
+                .map(key -> resolve(store, key))
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Returns up to limit users that come after the given cursor in this order.
+     *
+     * @param store the store the positions are resolved against
+     * @param after the cursor of the last user of the previous page, or null for the first page
+     * @param limit the maximum number of users to return
+     * @return the page of users with the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is malformed or was taken from another order
+     */
+    UserPage page(UserStore store, String after, int limit)
+    {
+        // Start right after the cursor position, O(log n) in the skip list.
+        NavigableSet<Key> tail = after == null
+                ? entries
+                : entries.tailSet(Key.fromCursor(after, sort), false);
+
+        List<User> users = new ArrayList<>(Math.min(limit, 1024));
+        Key last = null;
+        Iterator<Key> it = tail.iterator();
+        while (users.size() < limit && it.hasNext()) {
+            Key key = it.next();
+            User user = resolve(store, key);
+            if (user != null) {
+                users.add(user);
+                last = key;
+            }
+        }
+
+        // There is a next page only if a live user follows the last one returned
+        // (the positions left behind by updates and deletes do not count).
+        boolean more = false;
+        while (!more && last != null && it.hasNext()) {
+            more = resolve(store, it.next()) != null;
+        }
+        String nextCursor = more ? last.toCursor(sort) : null;
+
+        return new UserPage(users, nextCursor);
+    }
+
+    /**
+     * Returns up to limit users whose sort key starts with the given prefix, in this order.
+     *
+     * The matching keys form one contiguous range of the skip list, so this costs
+     * O(log n + limit) however many users there are.
+     *
+     * @param store the store the positions are resolved against
+     * @param prefix the normalized (lower-case) prefix
+     * @param limit the maximum number of users to return
+     * @return the matching users
+     */
+    List<User> prefix(UserStore store, String prefix, int limit)
+    {
+        List<User> users = new ArrayList<>(Math.min(limit, 1024));
+        for (Key key : entries.tailSet(new Key(prefix, Long.MIN_VALUE))) {
+            if (users.size() >= limit || key.value() == null || !key.value().startsWith(prefix)) {
+                break;
+            }
+            User user = resolve(store, key);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Estimates the heap used by the index: per user a skip list node, the Key and, for the
+     * name and email orders, the lower-cased copy of the sort key. It walks the whole index.
+     *
+     * @return the estimated size in bytes
+     */
+    long estimateHeapBytes()
+    {
+        long bytes = 0;
+        for (Key key : entries) {
+            bytes += NODE_BYTES + KEY_BYTES + ConcurrentMapUserStore.stringBytes(key.value());
+        }
+        return bytes;
+    }
+
+    // Looks up the user at the given position. A position left behind by a concurrent
+    // update or delete (the record is gone or no longer sorts there) is skipped.
+    private User resolve(UserStore store, Key key)
+    {
+        User user = store.get(key.id());
+        return user != null && keyOf(user).equals(key) ? user : null;
+    }
+
+}
@@ -0,0 +1,82 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.model.User;
+
+import java.util.Iterator;
+
+/**
+ * Storage engine of the users, keyed by the primitive user id.
+ *
+ * All methods are thread-safe. The conditional methods compare records by
+ * version: the version of a user grows with every update and ids are never
+ * reused, so an equal version means the very same record.
+ */
+public interface UserStore {
+
+    /**
+     * Creates the storage engine with the given name.
+     *
+     * @param engine "map" for the object-per-user hash map, "compact" for the columnar store
+     * @return the new, empty store
+     * @throws IllegalArgumentException if the engine name is unknown
+     */
+    static UserStore create(String engine)
+    {
+        return switch (engine) {
+            case "map" -> new ConcurrentMapUserStore();
+            case "compact" -> new CompactUserStore();
+            default -> throw new IllegalArgumentException("Unknown user store engine: " + engine);
+        };
+    }
+
+    /**
+     * Returns the name of the engine, as accepted by {@link #create(String)}.
+     */
+    String engine();
+
+    /**
+     * Returns the user with the given id, or null if there is none.
+     */
+    User get(long id);
+
+    /**
+     * Stores a new user (or overwrites the record with the same id unconditionally).
+     */
+    void put(User user);
+
+    /**
+     * Replaces a user only if the stored record is still the expected one.
+     *
+     * @param expected the record read before
+     * @param replacement the new record with the same id
+     * @return true if replaced, false if the record was changed or removed meanwhile
+     */
+    boolean replace(User expected, User replacement);
+
+    /**
+     * Removes a user only if the stored record is still the expected one.
+     *
+     * @param expected the record read before
+     * @return true if removed, false if the record was changed or removed meanwhile
+     */
+    boolean remove(User expected);
+
+    /**
+     * Returns a weakly consistent iterator over all users, in no particular order.
+     */
+    Iterator<User> iterator();
+
+    /**
+     * Returns the number of stored users.
+     */
+    int size();
+
+    /**
+     * Estimates the heap used by the stored users (records, keys and strings),
+     * not counting the indexes of the UserService. It may walk the whole store.
+     *
+     * @return the estimated size in bytes
+     */
+    long estimateHeapBytes();
+
+}
@@ -0,0 +1,15 @@
+package hu.uni.restlab.service;
+
+/**
+ * Memory statistics of the user store.
+ *
+ * @param engine the name of the storage engine
+ * @param users the number of stored users
+ * @param heapBytes the estimated heap used by the records
+ * @param indexHeapBytes the estimated heap used by the indexes (sort orders, email, search)
+ *                       and the change log of the delta sync,
+ *                       the same for every engine
+ * @param bytesPerUser heapBytes plus indexHeapBytes divided by the number of users
+ */
+public record UserStoreStats(String engine, int users, long heapBytes, long indexHeapBytes, double bytesPerUser) {
+}
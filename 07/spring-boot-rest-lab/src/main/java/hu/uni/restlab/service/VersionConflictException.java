@@ -0,0 +1,35 @@
+package hu.uni.restlab.service;
+
+/**
+ * Thrown when a conditional update or delete expects a different version
+ * of the user than the one currently stored (optimistic concurrency).
+ *
+ * The REST layer translates it to 412 Precondition Failed.
+ */
+public class VersionConflictException extends RuntimeException {
+
+    private final long id;
+    private final long expectedVersion;
+    private final long currentVersion;
+
+    public VersionConflictException(long id, long expectedVersion, long currentVersion)
+    {
+        super("User " + id + " has version " + currentVersion + ", expected " + expectedVersion);
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+
+}
@@ -1,6 +1,7 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
 import { Router } from '@angular/router';
-import { User } from '../../models/user.model';
+import { Subscription } from 'rxjs';
+import { User, UserChange } from '../../models/user.model';
 import { UserService } from '../../services/user.service';
 
 /**
@@ -18,7 +19,7 @@ import { UserService } from '../../services/user.service';
   templateUrl: './users.component.html',
   styleUrls: ['./users.component.css']
 })
-export class UsersComponent implements OnInit {
+export class UsersComponent implements OnInit, OnDestroy {
 
   /**
    * Array of users fetched from the backend
@@ -40,6 +41,31 @@ export class UsersComponent implements OnInit {
    */
   successMessage: string | null = null;
 
+  /**
+   * Subscription of the change feed, closed when the component is destroyed
+   */
+  private changes?: Subscription;
+
+  /**
+   * Latest known version of each displayed user
+   */
+  private versions = new Map<number, number>();
+
+  /**
+   * Ids of the deleted users (ids are never reused, so a later event of them is stale)
+   */
+  private deleted = new Set<number>();
+
+  /**
+   * Whether the list has been loaded; until then the changes are kept in pending
+   */
+  private ready = false;
+
+  /**
+   * Changes received while the list is being loaded, applied once it has arrived
+   */
+  private pending: UserChange[] = [];
+
   /**
    * Constructor with dependency injection.
    * 
@@ -53,24 +79,104 @@ export class UsersComponent implements OnInit {
 
   /**
    * Angular lifecycle hook called after component initialization.
-   * Loads all users when the component is created.
+   * Opens the change feed and loads all users once it is connected,
+   * so no change between the load and the feed is missed.
    */
   ngOnInit(): void {
-    this.loadUsers();
+    let loaded = false;
+    this.loading = true;
+
+    this.changes = this.userService.watchUsers().subscribe(change => {
+      if (change.type === 'open') {
+        // The first connection; after a reconnect the server replays the missed events.
+        if (!loaded) {
+          loaded = true;
+          this.loadUsers();
+        }
+      } else {
+        this.applyChange(change);
+      }
+    });
+  }
+
+  /**
+   * Angular lifecycle hook called before the component is destroyed.
+   * Closes the change feed.
+   */
+  ngOnDestroy(): void {
+    this.changes?.unsubscribe();
+  }
+
+  /**
+   * Applies a change pushed by the server to the displayed list.
+   * Changes that arrive before the list has been loaded are kept until then, and a change
+   * that is not newer than the displayed state of the user is dropped.
+   *
+   * @param change - The change event
+   */
+  private applyChange(change: UserChange): void {
+    const user = change.user;
+
+    if (change.type === 'resync') {
+      this.loadUsers();
+      return;
+    }
+    if (!this.ready) {
+      this.pending.push(change);
+      return;
+    }
+
+    switch (change.type) {
+      case 'created':
+      case 'updated':
+        if (user && !this.deleted.has(user.id) && (user.version ?? 0) > (this.versions.get(user.id) ?? 0)) {
+          const index = this.users.findIndex(u => u.id === user.id);
+          const updated = { id: user.id, name: user.name, email: user.email, version: user.version };
+          this.versions.set(user.id, user.version ?? 0);
+          this.users = index < 0
+            ? [...this.users, updated].sort((a, b) => a.id - b.id)
+            : this.users.map(u => u.id === user.id ? updated : u);
+        }
+        break;
+      case 'deleted':
+        if (user) {
+          this.removeUser(user.id);
+        }
+        break;
+    }
+  }
+
+  /**
+   * Removes a user from the displayed list and remembers that it is deleted.
+   *
+   * @param userId - The ID of the deleted user
+   */
+  private removeUser(userId: number): void {
+    this.deleted.add(userId);
+    this.versions.delete(userId);
+    this.users = this.users.filter(u => u.id !== userId);
   }
 
   /**
    * Loads all users from the backend via UserService.
    * Sets loading state and handles errors appropriately.
+   * The changes received meanwhile are applied on top of the loaded list.
    */
   loadUsers(): void {
     this.loading = true;
     this.errorMessage = null;
+    this.ready = false;
 
     this.userService.getAllUsers().subscribe({
       next: (data) => {
-        this.users = data;
+        this.users = data.filter(u => !this.deleted.has(u.id));
+        this.versions = new Map(this.users.map(u => [u.id, u.version ?? 0]));
+        this.ready = true;
         this.loading = false;
+
+        const pending = this.pending;
+        this.pending = [];
+        pending.forEach(change => this.applyChange(change));
       },
       error: (error) => {
         this.errorMessage = error.message;
@@ -115,8 +221,8 @@ export class UsersComponent implements OnInit {
         next: () => {
           this.successMessage = `User "${userName}" has been successfully deleted.`;
           this.loading = false;
-          // Reload the user list to reflect the deletion
-          this.loadUsers();
+          // The deletion arrives through the change feed as well; remove it right away.
+          this.removeUser(userId);
           
           // Clear success message after 3 seconds
           setTimeout(() => {
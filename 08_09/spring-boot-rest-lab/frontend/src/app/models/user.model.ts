@@ -19,6 +19,12 @@ export interface User {
    * User's email address
    */
   email: string;
+
+  /**
+   * Version of the record, increased by every update
+   * (used to tell which of two states of the user is the newer one)
+   */
+  version?: number;
 }
 
 /**
@@ -38,3 +44,23 @@ export interface UserRequest {
    */
   email: string;
 }
+
+/**
+ * Event of the user change feed (Server-Sent Events of /api/v1/users/stream).
+ *
+ * - open: the feed is connected (or reconnected)
+ * - created / updated: the user carries the new data
+ * - deleted: only the id and the version of the user are set
+ * - resync: events were missed, the list must be reloaded
+ */
+export interface UserChange {
+  /**
+   * Kind of the event
+   */
+  type: 'open' | 'created' | 'updated' | 'deleted' | 'resync';
+
+  /**
+   * The changed user (created, updated and deleted events only)
+   */
+  user?: User;
+}
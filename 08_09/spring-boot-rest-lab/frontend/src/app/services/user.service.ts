@@ -1,8 +1,8 @@
-import { Injectable } from '@angular/core';
+import { Injectable, NgZone } from '@angular/core';
 import { HttpClient, HttpErrorResponse } from '@angular/common/http';
 import { Observable, throwError } from 'rxjs';
 import { catchError } from 'rxjs/operators';
-import { User, UserRequest } from '../models/user.model';
+import { User, UserChange, UserRequest } from '../models/user.model';
 
 /**
  * Service for managing user data via REST API.
@@ -26,8 +26,9 @@ export class UserService {
    * Constructor with dependency injection of HttpClient.
    * 
    * @param http - Angular's HttpClient for making HTTP requests
+   * @param zone - Angular zone, the feed callbacks run inside it so the view is updated
    */
-  constructor(private http: HttpClient) { }
+  constructor(private http: HttpClient, private zone: NgZone) { }
 
   /**
    * Fetches all users from the backend.
@@ -41,6 +42,32 @@ export class UserService {
       );
   }
 
+  /**
+   * Watches the changes of the users (Server-Sent Events).
+   *
+   * Instead of polling the whole list, the server pushes every create, update
+   * and delete. The browser reconnects automatically and resumes after the last
+   * received event; when events were lost a 'resync' event is emitted.
+   * The connection is closed when the subscription is unsubscribed.
+   *
+   * @returns Observable of the change events
+   */
+  watchUsers(): Observable<UserChange> {
+    return new Observable<UserChange>(subscriber => {
+      const source = new EventSource(`${this.apiUrl}/stream`);
+      const emit = (change: UserChange) => this.zone.run(() => subscriber.next(change));
+
+      source.onopen = () => emit({ type: 'open' });
+      for (const type of ['created', 'updated', 'deleted'] as const) {
+        source.addEventListener(type, event =>
+          emit({ type, user: JSON.parse((event as MessageEvent).data) as User }));
+      }
+      source.addEventListener('resync', () => emit({ type: 'resync' }));
+
+      return () => source.close();
+    });
+  }
+
   /**
    * Fetches a single user by ID.
    * 
@@ -0,0 +1,13 @@
+package hu.uni.restlab.controller;
+
+/**
+ * Data record representing a change of a user in the change feed.
+ *
+ * The name and the email are null for a deleted user.
+ */
+public record UserChangeResponse(
+        long id,
+        String name,
+        String email,
+        long version
+) { }
@@ -1,14 +1,34 @@
 package hu.uni.restlab.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.CodedOutputStream;
+import hu.uni.restlab.config.UserProtobufHttpMessageConverter;
 import hu.uni.restlab.model.User;
 import hu.uni.restlab.service.UserService;
 import jakarta.validation.Valid;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * REST controller for managing users.
@@ -20,38 +40,138 @@ import java.util.List;
 @RequestMapping("/api/v1/users")
 public class UserController {
 
+    // In streaming mode the response is flushed after every this many users.
+    private static final int STREAM_FLUSH_SIZE = 512;
+
+    // Start of this process (base 36), the first part of every ETag: the versions and the modification
+    // count start again from the same values after a restart, so an ETag of an earlier run must not match.
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+    // The encodings of the streamed list, in order of preference.
+    private static final List<MediaType> STREAM_FORMATS =
+            List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, SMILE, UserProtobufHttpMessageConverter.PROTOBUF);
+
     private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final MappingJackson2CborHttpMessageConverter cborConverter;
+    private final MappingJackson2SmileHttpMessageConverter smileConverter;
+    private final UserEventStream eventStream;
 
     /**
-     * Constructor injection of UserService.
+     * Constructor injection of UserService, the Jackson ObjectMappers and the change feed.
      *
      * @param userService the user service handling business logic
+     * @param objectMapper the ObjectMapper used for streaming serialization
+     * @param cborConverter the CBOR converter, its ObjectMapper is used for streaming CBOR
+     * @param smileConverter the Smile converter, its ObjectMapper is used for streaming Smile
+     * @param eventStream the Server-Sent Events sender of the change feed
      */
-    public UserController(UserService userService) {
+    public UserController(UserService userService,
+                          ObjectMapper objectMapper,
+                          MappingJackson2CborHttpMessageConverter cborConverter,
+                          MappingJackson2SmileHttpMessageConverter smileConverter,
+                          UserEventStream eventStream) {
         this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.cborConverter = cborConverter;
+        this.smileConverter = smileConverter;
+        this.eventStream = eventStream;
     }
 
     // GET /api/v1/users
     @GetMapping
-    public List<UserResponse> listUsers()
+    public ResponseEntity<List<UserResponse>> listUsers(@RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+                                                        WebRequest request)
     {
+        // Answer If-None-Match / If-Modified-Since before touching the store:
+        // an unchanged collection is answered with 304 and nothing is serialized.
+        String etag = collectionETag("list", responseFormat(accept));
+        long lastModified = userService.getLastModified();
+        if (request.checkNotModified(etag, lastModified)) {
+            return null;
+        }
+
         // Delegate to service and convert entities to response DTOs.
-        return userService.findAllUsers().stream()
+        List<UserResponse> body = userService.findAllUsers().stream()
                 .map(user -> userService.toResponse(user))
                 .toList();
+
+        // no-cache: the browser may keep the list, but must revalidate it with the ETag.
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .lastModified(lastModified)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(body);
+    }
+
+    // GET /api/v1/users?stream=true
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamUsers(@RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+                                                             WebRequest request)
+    {
+        MediaType format = responseFormat(accept);
+
+        // Conditional GET: an unchanged collection is not streamed again.
+        String etag = collectionETag("stream", format);
+        long lastModified = userService.getLastModified();
+        if (request.checkNotModified(etag, lastModified)) {
+            return null;
+        }
+
+        // Write the users straight from the store, in the encoding the client accepts.
+        // No list is built in memory, so memory use does not depend on the store size.
+        StreamingResponseBody body = format.equals(UserProtobufHttpMessageConverter.PROTOBUF)
+                ? out -> writeProtobufStream(userService.streamAllUsers(), out)
+                : out -> writeJacksonStream(userService.streamAllUsers(), mapperFor(format), out);
+
+        return ResponseEntity.ok()
+                .contentType(format)
+                .eTag(etag)
+                .lastModified(lastModified)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(body);
+    }
+
+    // GET /api/v1/users/stream
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter watchUsers(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId)
+    {
+        // Server-Sent Events: created / updated / deleted for every change, resync if the client must reload.
+        // The browser resends the id of the last received event when it reconnects,
+        // and the missed events are replayed from the recent ones kept in memory.
+        return eventStream.open(lastEventId);
     }
 
     // GET /api/v1/users/{id}
     @GetMapping("/{id}")
-    public ResponseEntity<UserResponse> getUser(@PathVariable("id") long id)
+    public ResponseEntity<UserResponse> getUser(@PathVariable("id") long id,
+                                                @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+                                                WebRequest request)
     {
         // Delegate to service to fetch the user by id.
-        // If user is found, convert to response DTO and return 200 OK.
-        // if the user does not exist, return 404 Not Found.
-        return userService.findUserById(id)
-                .map(user -> userService.toResponse(user))
-                .map(response -> ResponseEntity.ok(response))
-                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+        // If the user does not exist, return 404 Not Found.
+        Optional<User> user = userService.findUserById(id);
+        if (user.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        // If the client already has this version, return 304 Not Modified without a body.
+        String etag = recordETag(user.get(), responseFormat(accept));
+        if (request.checkNotModified(etag, user.get().getLastModified())) {
+            return null;
+        }
+
+        // Otherwise convert to response DTO and return 200 OK.
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .lastModified(user.get().getLastModified())
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(userService.toResponse(user.get()));
     }
 
     // POST /api/v1/users
@@ -96,4 +216,92 @@ public class UserController {
         return ResponseEntity.noContent().build();
     }
 
+    // The encoding of a response (and of a streamed list): the first of JSON, CBOR, Smile and protobuf
+    // the client accepts (by quality and specificity), JSON if it accepts none of them.
+    private static MediaType responseFormat(String accept)
+    {
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+            MimeTypeUtils.sortBySpecificity(accepted);
+        } catch (InvalidMediaTypeException | InvalidMimeTypeException e) {
+            // Unparsable, or too many media types to sort.
+            return MediaType.APPLICATION_JSON;
+        }
+        for (MediaType type : accepted) {
+            for (MediaType format : STREAM_FORMATS) {
+                if (type.includes(format)) {
+                    return format;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    private ObjectMapper mapperFor(MediaType format)
+    {
+        if (format.equals(MediaType.APPLICATION_CBOR)) {
+            return cborConverter.getObjectMapper();
+        }
+        if (format.equals(SMILE)) {
+            return smileConverter.getObjectMapper();
+        }
+        return objectMapper;
+    }
+
+    // Writes the users as an array with a Jackson generator: JSON, or the same structure in CBOR or Smile.
+    private void writeJacksonStream(Stream<User> users, ObjectMapper mapper, OutputStream out) throws IOException
+    {
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            // The servlet container owns the output stream, do not close it.
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+
+            int count = 0;
+            Iterator<User> it = users.iterator();
+            while (it.hasNext()) {
+                generator.writeObject(userService.toResponse(it.next()));
+
+                // Flush in chunks, so the client receives data while the rest is still being written.
+                if (++count % STREAM_FLUSH_SIZE == 0) {
+                    generator.flush();
+                }
+            }
+
+            generator.writeEndArray();
+        }
+    }
+
+    // Writes the users as a protobuf UserList, one element after the other.
+    private void writeProtobufStream(Stream<User> users, OutputStream out) throws IOException
+    {
+        CodedOutputStream protobuf = CodedOutputStream.newInstance(out);
+
+        int count = 0;
+        Iterator<User> it = users.iterator();
+        while (it.hasNext()) {
+            UserProtobufHttpMessageConverter.writeListItem(protobuf, userService.toResponse(it.next()));
+
+            if (++count % STREAM_FLUSH_SIZE == 0) {
+                protobuf.flush();
+                out.flush();
+            }
+        }
+        protobuf.flush();
+    }
+
+    // Strong ETag of a single user: the epoch, the version of the record and the encoding
+    // (a strong ETag promises byte-identical content, which a JSON and a CBOR response are not).
+    private static String recordETag(User user, MediaType format)
+    {
+        return "\"" + EPOCH + "-" + user.getVersion() + "-" + format.getSubtype() + "\"";
+    }
+
+    // Strong ETag of a collection view: the epoch, the global modification count, the kind of view and
+    // the encoding, because the plain and the streamed list, and their encodings, are different representations.
+    private String collectionETag(String view, MediaType format)
+    {
+        return "\"" + EPOCH + "-" + userService.getModificationCount() + "-" + view + "-" + format.getSubtype() + "\"";
+    }
+
 }
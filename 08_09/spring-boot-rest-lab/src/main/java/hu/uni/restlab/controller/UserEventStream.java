@@ -0,0 +1,224 @@
+package hu.uni.restlab.controller;
+
+import hu.uni.restlab.service.UserChangeEvent;
+import hu.uni.restlab.service.UserEventBus;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the user change feed to the clients as Server-Sent Events.
+ *
+ * Events: "created", "updated" and "deleted" with the user as JSON data, and "resync"
+ * when the client has missed events and must reload the list. The event id is
+ * "{run}-{sequence}", where the run identifies the start of the application, so a
+ * client resuming with the id of an earlier run is told to resync instead of
+ * receiving the wrong events.
+ *
+ * The events of a client are sent by a small shared pool, one batch at a time per
+ * client, never by the thread that changed the store. A comment is sent periodically
+ * so proxies do not close an idle connection and dead clients are noticed.
+ */
+@Component
+public class UserEventStream {
+
+    /**
+     * One connected client.
+     */
+    private final class Client {
+
+        private final SseEmitter emitter;
+        private final AtomicInteger work = new AtomicInteger();   // pending wake-ups; > 0 while a sender runs
+        private volatile UserEventBus.Subscription subscription;
+        private volatile boolean heartbeat;
+        private volatile boolean closed;
+
+        private Client(SseEmitter emitter)
+        {
+            this.emitter = emitter;
+        }
+
+        // Schedules a sender, unless one is already running (it will see the new events).
+        void wakeUp()
+        {
+            if (!closed && work.getAndIncrement() == 0) {
+                try {
+                    dispatcher.execute(this::send);
+                } catch (RuntimeException e) {
+                    // Shutting down.
+                    close();
+                }
+            }
+        }
+
+        // Sends everything pending; loops while new wake-ups arrived in the meantime.
+        private void send()
+        {
+            int missed = work.get();
+            do {
+                try {
+                    sendPending();
+                } catch (IOException | IllegalStateException e) {
+                    // The client went away (or the emitter has completed).
+                    close();
+                    return;
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void sendPending() throws IOException
+        {
+            if (closed || subscription == null) {
+                return;
+            }
+            boolean sent = false;
+
+            long resync = subscription.takeResync();
+            if (resync >= 0) {
+                emitter.send(SseEmitter.event().id(eventId(resync)).name("resync").data("{}", MediaType.APPLICATION_JSON));
+                sent = true;
+            }
+            for (UserChangeEvent event : subscription.drain()) {
+                UserChangeResponse data = new UserChangeResponse(event.userId(), event.name(), event.email(), event.version());
+                emitter.send(SseEmitter.event()
+                        .id(eventId(event.sequence()))
+                        .name(event.type().name().toLowerCase())
+                        .data(data, MediaType.APPLICATION_JSON));
+                sent = true;
+            }
+            if (heartbeat) {
+                heartbeat = false;
+                if (!sent) {
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                }
+            }
+        }
+
+        void close()
+        {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            clients.remove(this);
+            if (subscription != null) {
+                subscription.close();
+            }
+            emitter.complete();
+        }
+    }
+
+    private final UserEventBus bus;
+    private final String run = Long.toString(System.currentTimeMillis(), 36);
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    private final ExecutorService dispatcher;
+    private final ScheduledExecutorService heartbeats;
+
+    public UserEventStream(
+            UserEventBus bus,
+            @Value("${user-events.subscriber-buffer:256}") int bufferSize,
+            @Value("${user-events.timeout-ms:1800000}") long timeoutMillis,
+            @Value("${user-events.dispatch-threads:2}") int dispatchThreads,
+            @Value("${user-events.heartbeat-seconds:15}") long heartbeatSeconds)
+    {
+        this.bus = bus;
+        this.bufferSize = Math.max(1, bufferSize);
+        this.timeoutMillis = timeoutMillis;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.dispatcher = Executors.newFixedThreadPool(Math.max(1, dispatchThreads), r -> {
+            Thread thread = new Thread(r, "user-events-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-events-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats.scheduleWithFixedDelay(() -> {
+            for (Client client : clients) {
+                client.heartbeat = true;
+                client.wakeUp();
+            }
+        }, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Opens the feed for a client.
+     *
+     * @param lastEventId the Last-Event-ID header of a reconnecting client, or null
+     * @return the emitter of the response
+     */
+    public SseEmitter open(String lastEventId)
+    {
+        Client client = new Client(new SseEmitter(timeoutMillis));
+        client.emitter.onCompletion(client::close);
+        client.emitter.onTimeout(client::close);
+        client.emitter.onError(e -> client.close());
+
+        clients.add(client);
+        client.subscription = bus.subscribe(lastSequence(lastEventId), bufferSize, client::wakeUp);
+
+        // Send the replayed events (or the resync marker), and let the client know the feed is open.
+        client.heartbeat = true;
+        client.wakeUp();
+        return client.emitter;
+    }
+
+    /**
+     * Returns the number of connected clients.
+     */
+    public int size()
+    {
+        return clients.size();
+    }
+
+    // The sequence in a Last-Event-ID: -1 for none, past the end of the feed for an unknown run
+    // (the bus answers that with a resync).
+    private long lastSequence(String lastEventId)
+    {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return -1;
+        }
+        int dash = lastEventId.indexOf('-');
+        try {
+            if (dash > 0 && lastEventId.substring(0, dash).equals(run)) {
+                return Long.parseLong(lastEventId.substring(dash + 1).trim());
+            }
+        } catch (NumberFormatException e) {
+            // Fall through: treat it as an id we do not know.
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private String eventId(long sequence)
+    {
+        return run + "-" + sequence;
+    }
+
+    @PreDestroy
+    void close()
+    {
+        heartbeats.shutdownNow();
+        for (Client client : clients) {
+            client.close();
+        }
+        dispatcher.shutdownNow();
+    }
+
+}
@@ -3,10 +3,12 @@ package hu.uni.restlab.controller;
 /**
  * Data record representing a user response.
  *
- * This record is used to transfer user data in API responses.
+ * This record is used to transfer user data in API responses. The version lets a client
+ * that also follows the change feed tell which of two states of a user is the newer one.
  */
 public record UserResponse(
         long id,
         String name,
-        String email
+        String email,
+        long version
 ) { }
@@ -0,0 +1,309 @@
+package hu.uni.restlab.persistence;
+
+import hu.uni.restlab.model.User;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Optional durability for the in-memory user store: write-ahead log + periodic snapshots.
+ *
+ * When enabled (user-store.persistence.enabled=true), every mutation is appended to a
+ * group-committed write-ahead log, and a background thread periodically writes a compact
+ * binary snapshot of the store through a memory-mapped file. On startup the latest
+ * snapshot is loaded and the log written after it is replayed, so a restart only has
+ * to read one snapshot and a short log tail.
+ *
+ * When disabled, every method is a cheap no-op.
+ */
+@Component
+public class UserStorePersistence {
+
+    private static final Logger log = LoggerFactory.getLogger(UserStorePersistence.class);
+
+    /**
+     * The state read back on startup.
+     *
+     * @param users the recovered users
+     * @param idHighWaterMark the highest id ever issued, the id sequence continues from here
+     * @param modificationCount the restored global modification counter
+     * @param fresh true if there was no stored data at all (first start)
+     */
+    public record RecoveredState(
+            Collection<User> users,
+            long idHighWaterMark,
+            long modificationCount,
+            boolean fresh
+    ) { }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long snapshotIntervalSeconds;
+    private final boolean syncCommit;
+
+    // Mutations hold the shared side while they change the store and append to the log;
+    // taking a snapshot holds the exclusive side for the moment it starts a new log segment.
+    // Writers never exclude each other, only the rare segment switch waits for them.
+    private final StampedLock segmentLock = new StampedLock();
+
+    // In sync-commit mode: the last record appended by this thread, awaited after the mutation.
+    private final ThreadLocal<CompletableFuture<Void>> pendingCommit = new ThreadLocal<>();
+
+    private WriteAheadLog wal;
+    private ScheduledExecutorService scheduler;
+    private Supplier<Iterator<User>> snapshotUsers;
+    private LongSupplier idHighWaterMark;
+    private LongSupplier modificationCount;
+    private long lastSnapshotModificationCount = -1;
+
+    public UserStorePersistence(
+            @Value("${user-store.persistence.enabled:false}") boolean enabled,
+            @Value("${user-store.persistence.directory:./data}") String directory,
+            @Value("${user-store.persistence.snapshot-interval-seconds:300}") long snapshotIntervalSeconds,
+            @Value("${user-store.persistence.sync-commit:false}") boolean syncCommit)
+    {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        this.syncCommit = syncCommit;
+    }
+
+    /**
+     * Creates a disabled instance (pure in-memory store), e.g. for tests and benchmarks.
+     */
+    public static UserStorePersistence disabled()
+    {
+        return new UserStorePersistence(false, ".", 0, false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Loads the latest snapshot, replays the log written after it and opens a new log segment.
+     *
+     * Log records are applied with "the highest version wins" and "a delete is final"
+     * (ids are never reused), so the result does not depend on the order in which
+     * concurrent writers reached the log, nor on how fuzzy the snapshot was.
+     *
+     * @return the recovered state
+     */
+    public RecoveredState recover()
+    {
+        try {
+            Files.createDirectories(directory);
+
+            Map<Long, User> users = new HashMap<>();
+            SnapshotFile.Header header = SnapshotFile.readLatest(directory, user -> users.put(user.getId(), user));
+            long fromSegment = header != null ? header.segment() : 0;
+
+            long[] maxId = {header != null ? header.idHighWaterMark() : 0};
+            Set<Long> deleted = new HashSet<>();
+            long replayed = WriteAheadLog.replay(directory, fromSegment, entry -> {
+                User user = entry.user();
+                maxId[0] = Math.max(maxId[0], user.getId());
+
+                if (entry.type() == UserRecordCodec.DELETE) {
+                    users.remove(user.getId());
+                    deleted.add(user.getId());
+                } else if (!deleted.contains(user.getId())) {
+                    User existing = users.get(user.getId());
+                    if (existing == null || existing.getVersion() < user.getVersion()) {
+                        users.put(user.getId(), user);
+                    }
+                }
+            });
+
+            List<Long> segments = WriteAheadLog.listSegments(directory);
+            long lastSegment = Math.max(fromSegment, segments.isEmpty() ? 0 : segments.get(segments.size() - 1));
+            boolean fresh = header == null && segments.isEmpty();
+
+            wal = new WriteAheadLog(directory, lastSegment);
+
+            long modifications = (header != null ? header.modificationCount() : 0) + replayed;
+            log.info("Recovered {} users from {} (snapshot: {}, replayed log records: {})",
+                    users.size(), directory.toAbsolutePath(), header != null ? "segment " + header.segment() : "none", replayed);
+
+            return new RecoveredState(users.values(), maxId[0], modifications, fresh);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not recover the user store from " + directory, e);
+        }
+    }
+
+    /**
+     * Starts the periodic snapshots of the recovered store.
+     *
+     * @param users supplies a (weakly consistent) iterator over all users
+     * @param idHighWaterMark supplies the current value of the id sequence
+     * @param modificationCount supplies the current global modification counter
+     */
+    public void start(Supplier<Iterator<User>> users, LongSupplier idHighWaterMark, LongSupplier modificationCount)
+    {
+        this.snapshotUsers = users;
+        this.idHighWaterMark = idHighWaterMark;
+        this.modificationCount = modificationCount;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-store-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly,
+                snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Marks the start of a mutation. Call it right before the change is applied to the store.
+     *
+     * @return a stamp to pass to {@link #endMutation(long)}
+     * @throws UncheckedIOException if the write-ahead log has failed; the store must not be changed then,
+     *         because the change could not be logged
+     */
+    public long beginMutation()
+    {
+        if (!enabled) {
+            return 0L;
+        }
+        if (wal != null) {
+            wal.checkHealthy();
+        }
+        return segmentLock.readLock();
+    }
+
+    /**
+     * Marks the end of a mutation. In sync-commit mode this waits until the
+     * logged record is on disk (outside of the lock).
+     *
+     * @param stamp the stamp returned by {@link #beginMutation()}
+     */
+    public void endMutation(long stamp)
+    {
+        if (!enabled) {
+            return;
+        }
+        segmentLock.unlockRead(stamp);
+
+        CompletableFuture<Void> pending = pendingCommit.get();
+        if (pending != null) {
+            pendingCommit.remove();
+            pending.join();
+        }
+    }
+
+    /**
+     * Logs a created or updated user. Call it between beginMutation and endMutation.
+     */
+    public void logPut(User user)
+    {
+        append(UserRecordCodec.PUT, user);
+    }
+
+    /**
+     * Logs a deleted user. Call it between beginMutation and endMutation.
+     */
+    public void logDelete(User user)
+    {
+        append(UserRecordCodec.DELETE, user);
+    }
+
+    private void append(byte type, User user)
+    {
+        if (wal == null) {
+            return;
+        }
+
+        CompletableFuture<Void> durable = wal.append(type, user, syncCommit);
+        if (durable != null) {
+            pendingCommit.set(durable);
+        }
+    }
+
+    /**
+     * Writes a snapshot and deletes the log segments and snapshots it makes obsolete.
+     */
+    synchronized void snapshot() throws IOException
+    {
+        if (wal == null || snapshotUsers == null) {
+            return;
+        }
+        if (modificationCount.getAsLong() == lastSnapshotModificationCount) {
+            return; // nothing changed since the last snapshot
+        }
+
+        // Switch to a new log segment while no mutation is half-way between the store and the log.
+        // Everything before the switch is already in the store, everything after it is in the new segment.
+        WriteAheadLog.Roll roll;
+        SnapshotFile.Header header;
+        long stamp = segmentLock.writeLock();
+        try {
+            roll = wal.roll();
+            header = new SnapshotFile.Header(roll.segment(), idHighWaterMark.getAsLong(), modificationCount.getAsLong());
+        } finally {
+            segmentLock.unlockWrite(stamp);
+        }
+
+        long started = System.nanoTime();
+        long count = SnapshotFile.write(directory, header, snapshotUsers.get());
+        lastSnapshotModificationCount = header.modificationCount();
+
+        // The older files are not needed any more once the old segment is closed.
+        roll.done().join();
+        SnapshotFile.deleteOlder(directory, roll.segment());
+        for (long segment : WriteAheadLog.listSegments(directory)) {
+            if (segment < roll.segment()) {
+                Files.deleteIfExists(WriteAheadLog.segmentPath(directory, segment));
+            }
+        }
+
+        log.info("Wrote snapshot of {} users for segment {} in {} ms",
+                count, roll.segment(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private void snapshotQuietly()
+    {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.error("Snapshot of the user store failed", e);
+        }
+    }
+
+    /**
+     * Takes a final snapshot and closes the log on shutdown, so the next start is fast.
+     */
+    @PreDestroy
+    public void close()
+    {
+        if (!enabled || wal == null) {
+            return;
+        }
+
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        snapshotQuietly();
+
+        try {
+            wal.close();
+        } catch (IOException e) {
+            log.error("Could not close the write-ahead log", e);
+        }
+    }
+
+}
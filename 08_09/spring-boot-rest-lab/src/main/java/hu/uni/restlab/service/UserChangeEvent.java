@@ -0,0 +1,29 @@
+package hu.uni.restlab.service;
+
+/**
+ * A change of the user store, as published to the change feed.
+ *
+ * @param sequence the position of the event in the feed (1, 2, ...), restarts with the application
+ * @param type the kind of change
+ * @param userId the id of the changed user
+ * @param version the version of the record after the change (the last version for a delete)
+ * @param name the name after the change, null for a delete
+ * @param email the email after the change, null for a delete
+ */
+public record UserChangeEvent(
+        long sequence,
+        Type type,
+        long userId,
+        long version,
+        String name,
+        String email
+) {
+
+    /**
+     * The kind of change.
+     */
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+}
@@ -0,0 +1,200 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The change feed of the user store.
+ *
+ * Every create, update and delete is published as a numbered event. The last events
+ * are kept in a ring, so a client that reconnects can continue from the last event
+ * it received (Last-Event-ID) instead of reloading the whole list.
+ *
+ * Every subscriber has its own bounded buffer, filled by the publishing thread and
+ * drained by the subscriber's own sender, so a slow client never slows down a
+ * mutation or the other clients. When the buffer of a slow client is full, its
+ * pending events are coalesced (only the latest event of each user is kept); if that
+ * is still too many, they are dropped and the client is told to reload the list
+ * (a "resync" marker).
+ */
+@Component
+public class UserEventBus {
+
+    /**
+     * The pending events of one client.
+     */
+    public final class Subscription {
+
+        private final int capacity;
+        private final Runnable onEvent;
+        private final ArrayDeque<UserChangeEvent> pending = new ArrayDeque<>();
+        private long resyncSequence = -1;    // >= 0: the client must reload the list (as of this event)
+
+        private Subscription(int capacity, Runnable onEvent)
+        {
+            this.capacity = capacity;
+            this.onEvent = onEvent;
+        }
+
+        /**
+         * Takes the resync marker, if any.
+         *
+         * @return the sequence of the last event dropped, or -1 if nothing was dropped
+         */
+        public synchronized long takeResync()
+        {
+            long sequence = resyncSequence;
+            resyncSequence = -1;
+            return sequence;
+        }
+
+        /**
+         * Takes all pending events, in order.
+         */
+        public synchronized List<UserChangeEvent> drain()
+        {
+            List<UserChangeEvent> events = new ArrayList<>(pending);
+            pending.clear();
+            return events;
+        }
+
+        /**
+         * Stops the delivery of the events.
+         */
+        public void close()
+        {
+            subscriptions.remove(this);
+        }
+
+        // Called by the publisher, under the lock of the feed.
+        private synchronized void offer(UserChangeEvent event)
+        {
+            if (pending.size() >= capacity) {
+                coalesce();
+            }
+            if (pending.size() >= capacity) {
+                // Even the coalesced events do not fit: drop them, the client reloads the list.
+                pending.clear();
+                resyncSequence = event.sequence();
+                return;
+            }
+            pending.add(event);
+        }
+
+        // Keeps only the latest pending event of each user: a delete, or else the highest version
+        // (two concurrent updates of the same user may be published out of order).
+        private void coalesce()
+        {
+            Map<Long, UserChangeEvent> latest = new LinkedHashMap<>();
+            for (UserChangeEvent event : pending) {
+                latest.merge(event.userId(), event, (previous, next) ->
+                        previous.type() == UserChangeEvent.Type.DELETED || previous.version() > next.version()
+                                ? previous : next);
+            }
+            pending.clear();
+            latest.values().stream()
+                    .sorted(Comparator.comparingLong(UserChangeEvent::sequence))
+                    .forEach(pending::add);
+        }
+
+        private synchronized void requireResync(long sequence)
+        {
+            pending.clear();
+            resyncSequence = sequence;
+        }
+    }
+
+    private final UserChangeEvent[] ring;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Object lock = new Object();
+    private long lastSequence;    // guarded by lock
+
+    /**
+     * @param ringSize the number of recent events kept for resuming clients
+     */
+    @Autowired
+    public UserEventBus(@Value("${user-events.ring-size:1024}") int ringSize)
+    {
+        this.ring = new UserChangeEvent[Math.max(1, ringSize)];
+    }
+
+    /**
+     * Publishes a change. Called by the UserService after the change is logged, outside the store's
+     * locks. Concurrent changes of one user may be numbered out of order: the event carries the
+     * record version, and a client keeps the highest version and remembers the deleted ids.
+     *
+     * @param type the kind of change
+     * @param user the user after the change (the removed user for a delete)
+     */
+    public void publish(UserChangeEvent.Type type, User user)
+    {
+        boolean deleted = type == UserChangeEvent.Type.DELETED;
+
+        synchronized (lock) {
+            UserChangeEvent event = new UserChangeEvent(++lastSequence, type, user.getId(), user.getVersion(),
+                    deleted ? null : user.getName(), deleted ? null : user.getEmail());
+            ring[(int) (event.sequence() % ring.length)] = event;
+
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(event);
+            }
+        }
+
+        // Wake up the senders outside the lock.
+        for (Subscription subscription : subscriptions) {
+            subscription.onEvent.run();
+        }
+    }
+
+    /**
+     * Subscribes to the changes.
+     *
+     * @param lastSequence the last event the client has seen, or -1 for a new client (no replay)
+     * @param capacity the maximum number of pending events of the client
+     * @param onEvent called (on the publishing thread) when events are pending; must not block
+     * @return the subscription, already holding the missed events (or a resync marker if they are no longer in the ring)
+     */
+    public Subscription subscribe(long lastSequence, int capacity, Runnable onEvent)
+    {
+        Subscription subscription = new Subscription(capacity, onEvent);
+
+        // Replay and registration under the lock of the publisher: no event is missed or sent twice.
+        synchronized (lock) {
+            if (lastSequence >= 0 && lastSequence < this.lastSequence) {
+                if (this.lastSequence - lastSequence > ring.length) {
+                    subscription.requireResync(this.lastSequence);
+                } else {
+                    for (long sequence = lastSequence + 1; sequence <= this.lastSequence; sequence++) {
+                        subscription.offer(ring[(int) (sequence % ring.length)]);
+                    }
+                }
+            } else if (lastSequence > this.lastSequence) {
+                // An event id from the future: the client saw an earlier run of the application.
+                subscription.requireResync(this.lastSequence);
+            }
+            subscriptions.add(subscription);
+        }
+        return subscription;
+    }
+
+    /**
+     * Returns the sequence of the last published event.
+     */
+    public long getLastSequence()
+    {
+        synchronized (lock) {
+            return lastSequence;
+        }
+    }
+
+}
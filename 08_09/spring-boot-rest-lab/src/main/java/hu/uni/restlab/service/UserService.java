@@ -2,11 +2,15 @@ package hu.uni.restlab.service;
 
 import hu.uni.restlab.controller.UserResponse;
 import hu.uni.restlab.model.User;
+import hu.uni.restlab.persistence.UserStorePersistence;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 /**
  * Service class for managing user business logic.
@@ -26,17 +30,57 @@ public class UserService {
     // Note: normally the database would manage identifiers.
     private final AtomicLong idSeq = new AtomicLong(0);
 
+    // Global modification counter and time, bumped after every mutation of the store.
+    // Together they identify a state of the whole collection (ETag / Last-Modified).
+    private final AtomicLong modificationCount = new AtomicLong(0);
+    private volatile long lastModified = System.currentTimeMillis();
+
+    // Optional write-ahead log + snapshots; a no-op unless enabled in the configuration.
+    private final UserStorePersistence persistence;
+
+    // Change feed of the store (Server-Sent Events for the clients).
+    private final UserEventBus events;
+
     /**
-     * Constructor seeds the in-memory store with a few demo users.
+     * Creates a purely in-memory store seeded with a few demo users.
      */
     public UserService()
     {
-        // Populate the map with demo data.
-        long id1 = idSeq.incrementAndGet();
-        users.put(id1, new User(id1, "Alice", "alice@example.com"));
+        this(UserStorePersistence.disabled(), new UserEventBus(1024));
+    }
+
+    /**
+     * Constructor restores the stored users when persistence is enabled,
+     * otherwise (or on the very first start) seeds the store with a few demo users.
+     *
+     * @param persistence the durability component
+     * @param events the change feed the mutations are published to
+     */
+    @Autowired
+    public UserService(UserStorePersistence persistence, UserEventBus events)
+    {
+        this.persistence = persistence;
+        this.events = events;
+
+        if (persistence.isEnabled()) {
+            // Load the latest snapshot + log tail, and continue the id sequence after the highest id.
+            UserStorePersistence.RecoveredState state = persistence.recover();
+            for (User user : state.users()) {
+                users.put(user.getId(), user);
+            }
+            idSeq.set(state.idHighWaterMark());
+            modificationCount.set(state.modificationCount());
+
+            persistence.start(() -> users.values().iterator(), idSeq::get, modificationCount::get);
 
-        long id2 = idSeq.incrementAndGet();
-        users.put(id2, new User(id2, "Bob", "bob@example.com"));
+            if (!state.fresh()) {
+                return;
+            }
+        }
+
+        // Populate the store with demo data.
+        createUser("Alice", "alice@example.com");
+        createUser("Bob", "bob@example.com");
     }
 
     /**
@@ -53,6 +97,47 @@ public class UserService {
                 .toList();
     }
 
+    /**
+     * Returns the global modification counter of the store.
+     *
+     * The counter is incremented after every create, update and delete,
+     * so an unchanged value means the collection has not changed.
+     * Read it before reading the data: then the value can only be older
+     * than the data, never newer.
+     *
+     * @return the current modification count
+     */
+    public long getModificationCount()
+    {
+        return modificationCount.get();
+    }
+
+    /**
+     * Returns the time of the last mutation of the store.
+     *
+     * @return the modification time in epoch milliseconds
+     */
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    /**
+     * Returns a lazy stream over all users sorted by id.
+     *
+     * Instead of copying and sorting the values, the ids are walked from 1 to the
+     * last issued id and looked up one by one. This keeps the id order while the
+     * caller can write the users out in constant memory.
+     *
+     * @return stream of users sorted by id
+     */
+    public Stream<User> streamAllUsers()
+    {
+        return LongStream.rangeClosed(1, idSeq.get())
+                .mapToObj(id -> users.get(id))
+                .filter(Objects::nonNull);
+    }
+
     /**
      * Finds a user by their unique identifier.
      *
@@ -77,9 +162,17 @@ public class UserService {
         long id = idSeq.incrementAndGet();
         User user = new User(id, name, email);
 
-        // Store the user in the map.
-        users.put(id, user);
+        // Store the user in the map and log it.
+        long stamp = persistence.beginMutation();
+        try {
+            users.put(id, user);
+            persistence.logPut(user);
+            markModified();
+        } finally {
+            persistence.endMutation(stamp);
+        }
 
+        events.publish(UserChangeEvent.Type.CREATED, user);
         return user;
     }
 
@@ -93,15 +186,24 @@ public class UserService {
      */
     public Optional<User> updateUser(long id, String name, String email)
     {
-        // Check if the user exists.
-        if (!users.containsKey(id)) {
-            return Optional.empty();
-        }
+        // Replace the user only if it exists, with the next version of the record.
+        User updated;
+        long stamp = persistence.beginMutation();
+        try {
+            updated = users.computeIfPresent(id, (key, existing) ->
+                    new User(id, name, email, existing.getVersion() + 1, System.currentTimeMillis()));
 
-        // Update the user data and replace it in the map.
-        User updated = new User(id, name, email);
-        users.put(id, updated);
+            if (updated == null) {
+                return Optional.empty();
+            }
 
+            persistence.logPut(updated);
+            markModified();
+        } finally {
+            persistence.endMutation(stamp);
+        }
+
+        events.publish(UserChangeEvent.Type.UPDATED, updated);
         return Optional.of(updated);
     }
 
@@ -113,11 +215,35 @@ public class UserService {
      */
     public boolean deleteUser(long id)
     {
-        // Remove the user from the map; remove returns the old value or null if missing.
-        User removed = users.remove(id);
+        User removed;
+        long stamp = persistence.beginMutation();
+        try {
+            // Remove the user from the map; remove returns the old value or null if missing.
+            removed = users.remove(id);
+
+            // Return true if a user was actually removed.
+            if (removed == null) {
+                return false;
+            }
 
-        // Return true if a user was actually removed.
-        return removed != null;
+            persistence.logDelete(removed);
+            markModified();
+        } finally {
+            persistence.endMutation(stamp);
+        }
+
+        // Published once the change is logged, so no client learns about a change that could be lost.
+        // Concurrent changes of a user may be published out of order; clients order them by version.
+        events.publish(UserChangeEvent.Type.DELETED, removed);
+        return true;
+    }
+
+    // Records a mutation of the store. Called after the change is visible,
+    // so a reader never sees a new counter value together with old data.
+    private void markModified()
+    {
+        lastModified = System.currentTimeMillis();
+        modificationCount.incrementAndGet();
     }
 
     /**
@@ -128,7 +254,7 @@ public class UserService {
      */
     public UserResponse toResponse(User user)
     {
-        return new UserResponse(user.getId(), user.getName(), user.getEmail());
+        return new UserResponse(user.getId(), user.getName(), user.getEmail(), user.getVersion());
     }
 
 }
@@ -1,15 +1,15 @@
 package hu.uni.mvclab.config;
 
+import hu.uni.mvclab.security.JdbcCredentialStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 
 /**
@@ -18,13 +18,17 @@ import org.springframework.security.web.SecurityFilterChain;
  * This class is responsible for security settings:
  * - All pages are protected (authentication required)
  * - Form-based login is used
- * - In-memory user storage
+ * - User accounts in a database table (H2), with a bounded cache
+ * - Account management pages for admins
  * - Logout functionality
  */
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    @Value("${credentials.cache-size:10000}")
+    private int credentialCacheSize;
+
     /**
      * SecurityFilterChain - configure security filters
      */
@@ -36,6 +40,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authorize -> authorize
                         // CSS and static files are publicly accessible (optional)
                         .requestMatchers("/css/**", "/js/**", "/images/**").permitAll()
+                        // Account management only for admins
+                        .requestMatchers("/accounts/**").hasRole("ADMIN")
                         // All other URLs require authentication
                         .anyRequest().authenticated()
                 )
@@ -68,21 +74,25 @@ public class SecurityConfig {
     /**
      * UserDetailsService Bean - user management
      *
-     * In-memory storage with a single "dummy" user
-     * No database required - ideal for educational purposes
+     * The accounts are stored in a database table (see schema.sql) and looked up
+     * by the username (primary key), so any number of accounts can be stored.
+     * The "admin" user is created on the first start.
      */
     @Bean
-    public UserDetailsService userDetailsService()
+    public JdbcCredentialStore userDetailsService(JdbcTemplate jdbcTemplate)
     {
-        // Create user
-        UserDetails user = User.builder()
-                .username("admin")  // Username
-                .password(passwordEncoder().encode("admin123")) // Password (BCrypt hashed)
-                .roles("ADMIN")
-                .build();
+        JdbcCredentialStore store = new JdbcCredentialStore(jdbcTemplate, credentialCacheSize);
+
+        if (!store.userExists("admin")) {
+            // Create user
+            store.createUser(User.builder()
+                    .username("admin")  // Username
+                    .password(passwordEncoder().encode("admin123")) // Password (BCrypt hashed)
+                    .roles("ADMIN")
+                    .build());
+        }
 
-        // In-memory storage - with a single user
-        return new InMemoryUserDetailsManager(user);
+        return store;
     }
 
 }
@@ -0,0 +1,118 @@
+package hu.uni.mvclab.controller;
+
+import hu.uni.mvclab.dto.AccountForm;
+import hu.uni.mvclab.security.JdbcCredentialStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.util.List;
+
+/**
+ * MVC Controller for managing the login accounts (admins only)
+ * The accounts are listed page by page, in username order
+ */
+@Controller
+@RequestMapping("/accounts")
+public class AccountController {
+
+    private static final int PAGE_SIZE = 50;
+
+    private final JdbcCredentialStore credentialStore;
+    private final PasswordEncoder passwordEncoder;
+
+    @Autowired
+    public AccountController(JdbcCredentialStore credentialStore, PasswordEncoder passwordEncoder) {
+        this.credentialStore = credentialStore;
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    /**
+     * Show one page of the accounts and the "new account" form
+     * GET /accounts?after={username}
+     */
+    @GetMapping
+    public String listAccounts(@RequestParam(value = "after", required = false) String after, Model model)
+    {
+        List<JdbcCredentialStore.Account> accounts = credentialStore.list(after, PAGE_SIZE);
+
+        model.addAttribute("accounts", accounts);
+        model.addAttribute("count", credentialStore.count());
+        // The last username of a full page is where the next page starts
+        model.addAttribute("next", accounts.size() == PAGE_SIZE ? accounts.get(accounts.size() - 1).username() : null);
+        model.addAttribute("account", new AccountForm());
+        return "account-list"; // returns account-list.html template
+    }
+
+    /**
+     * Process the creation of a new account
+     * POST /accounts
+     */
+    @PostMapping
+    public String createAccount(@ModelAttribute("account") AccountForm form, RedirectAttributes redirectAttributes)
+    {
+        if (form.getUsername() == null || form.getUsername().isBlank()
+                || form.getPassword() == null || form.getPassword().isBlank()) {
+            redirectAttributes.addFlashAttribute("error", "Username and password are required!");
+            return "redirect:/accounts";
+        }
+
+        UserDetails user = User.withUsername(form.getUsername().trim())
+                .password(passwordEncoder.encode(form.getPassword()))
+                .roles("ADMIN".equals(form.getRole()) ? "ADMIN" : "USER")
+                .build();
+
+        try {
+            credentialStore.createUser(user);
+            redirectAttributes.addFlashAttribute("message", "Account created successfully!");
+        } catch (IllegalStateException e) {
+            redirectAttributes.addFlashAttribute("error", "Username is already taken!");
+        }
+
+        return "redirect:/accounts"; // redirect to list page
+    }
+
+    /**
+     * Enable or disable an account
+     * POST /accounts/toggle/{username} (a form with the CSRF token, never a link)
+     */
+    @PostMapping("/toggle/{username}")
+    public String toggleAccount(@PathVariable String username, RedirectAttributes redirectAttributes)
+    {
+        try {
+            UserDetails existing = credentialStore.loadUserByUsername(username);
+            credentialStore.updateUser(User.withUserDetails(existing).disabled(existing.isEnabled()).build());
+            redirectAttributes.addFlashAttribute("message",
+                    existing.isEnabled() ? "Account disabled successfully!" : "Account enabled successfully!");
+        } catch (UsernameNotFoundException e) {
+            redirectAttributes.addFlashAttribute("error", "Account not found!");
+        }
+
+        return "redirect:/accounts"; // redirect to list page
+    }
+
+    /**
+     * Delete an account
+     * POST /accounts/delete/{username} (a form with the CSRF token, never a link)
+     */
+    @PostMapping("/delete/{username}")
+    public String deleteAccount(@PathVariable String username, RedirectAttributes redirectAttributes)
+    {
+        boolean deleted = credentialStore.delete(username);
+
+        if (deleted) {
+            redirectAttributes.addFlashAttribute("message", "Account deleted successfully!");
+        } else {
+            redirectAttributes.addFlashAttribute("error", "Account not found!");
+        }
+
+        return "redirect:/accounts"; // redirect to list page
+    }
+
+}
@@ -0,0 +1,36 @@
+package hu.uni.mvclab.dto;
+
+/**
+ * Account form DTO
+ * Holds the fields of the "new account" form
+ */
+public class AccountForm {
+    private String username;
+    private String password;
+    private String role = "USER";
+
+    // Getters and Setters
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public void setRole(String role) {
+        this.role = role;
+    }
+}
@@ -1,19 +1,24 @@
 package hu.uni.restlab.config;
 
 import hu.uni.restlab.jwt.JwtAuthenticationFilter;
+import hu.uni.restlab.ratelimit.RateLimitFilter;
+import hu.uni.restlab.security.CalibratedBCryptPasswordEncoder;
+import hu.uni.restlab.security.JdbcCredentialStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
@@ -21,21 +26,38 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
  * Security configuration for the application.
  *
  * This class configures Spring Security with JWT-based authentication.
- * It defines public and protected endpoints, and sets up a demo user.
+ * It defines public and protected endpoints, and sets up the account store with a demo user.
+ * The roles are checked on the controller methods (@PreAuthorize), from the "roles" claim of the token.
  */
 @Configuration
 @EnableWebSecurity
+@EnableMethodSecurity
 public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final RateLimitFilter rateLimitFilter;
+
+    @Value("${login.bcrypt.target-millis:100}")
+    private long bcryptTargetMillis;
+
+    @Value("${login.bcrypt.min-strength:10}")
+    private int bcryptMinStrength;
+
+    @Value("${login.bcrypt.max-strength:14}")
+    private int bcryptMaxStrength;
+
+    @Value("${credentials.cache-size:10000}")
+    private int credentialCacheSize;
 
     /**
      * Constructor for SecurityConfig.
      *
      * @param jwtAuthenticationFilter The JWT authentication filter to be added to the security chain
+     * @param rateLimitFilter The rate limiting filter to be added to the security chain (after the JWT filter)
      */
-    public SecurityConfig(JwtAuthenticationFilter jwtAuthenticationFilter) {
+    public SecurityConfig(JwtAuthenticationFilter jwtAuthenticationFilter, RateLimitFilter rateLimitFilter) {
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
+        this.rateLimitFilter = rateLimitFilter;
     }
 
     /**
@@ -58,6 +80,12 @@ public class SecurityConfig {
                         .requestMatchers("/v3/api-docs/**").permitAll()
                         .requestMatchers("/swagger-ui.html").permitAll()
 
+                        // WebSocket handshake - the JWT token is checked by the JwtHandshakeInterceptor
+                        .requestMatchers("/ws/**").permitAll()
+
+                        // Account and token management only for admins
+                        .requestMatchers("/api/v1/admin/**").hasRole("ADMIN")
+
                         // All other endpoints require authentication
                         .anyRequest().authenticated()
                 )
@@ -68,50 +96,82 @@ public class SecurityConfig {
                 )
 
                 // Add JWT filter before the default authentication filter
-                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+
+                // Rate limiting after the JWT filter, so the user of the token is known
+                .addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class);
 
         return http.build();
     }
 
     /**
-     * Create a demo user for testing.
+     * Keep Spring Boot from registering the rate limiting filter as a servlet filter too.
+     *
+     * It would run before the security chain (without the user of the token) and,
+     * being a OncePerRequestFilter, the instance in the security chain would then be skipped.
      */
     @Bean
-    public UserDetailsService userDetailsService()
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration()
     {
-        // In-memory user store with a single demo user
-        InMemoryUserDetailsManager manager = new InMemoryUserDetailsManager();
-
-        // Create a demo user in the in-memory store
-        manager.createUser(User.builder()
-                .username("demo")
-                .password(passwordEncoder().encode("12345"))
-                .roles("USER")
-                .build());
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(rateLimitFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
 
-        return manager;
+    /**
+     * The account store, with a demo user and a demo admin for testing.
+     *
+     * The accounts are kept in a database table (see schema.sql), looked up by the
+     * username (primary key) and cached. Any other UserDetailsService bean can replace it.
+     */
+    @Bean
+    public JdbcCredentialStore userDetailsService(JdbcTemplate jdbcTemplate)
+    {
+        JdbcCredentialStore store = new JdbcCredentialStore(jdbcTemplate, credentialCacheSize);
+
+        // Create the demo users in the store on the first start
+        if (!store.userExists("demo")) {
+            store.createUser(User.builder()
+                    .username("demo")
+                    .password(passwordEncoder().encode("12345"))
+                    .roles("USER")
+                    .build());
+        }
+        if (!store.userExists("admin")) {
+            store.createUser(User.builder()
+                    .username("admin")
+                    .password(passwordEncoder().encode("admin123"))
+                    .roles("USER", "ADMIN")
+                    .build());
+        }
+
+        return store;
     }
 
     /**
      * Password encoder bean.
+     *
+     * BCrypt with a strength calibrated to the target time on this machine. Passwords hashed
+     * with another strength are rehashed at the next successful login (the user store
+     * implements UserDetailsPasswordService).
      */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new CalibratedBCryptPasswordEncoder(bcryptTargetMillis, bcryptMinStrength, bcryptMaxStrength);
     }
 
     /**
      * Authentication manager bean.
      */
     @Bean
-    public AuthenticationManager authenticationManager(HttpSecurity http) throws Exception
+    public AuthenticationManager authenticationManager(HttpSecurity http, UserDetailsService userDetailsService) throws Exception
     {
         // Get the AuthenticationManagerBuilder from HttpSecurity
         AuthenticationManagerBuilder authenticationManagerBuilder = http.getSharedObject(AuthenticationManagerBuilder.class);
 
         // Configure the authentication manager with userDetailsService and passwordEncoder
         authenticationManagerBuilder
-                .userDetailsService(userDetailsService())
+                .userDetailsService(userDetailsService)
                 .passwordEncoder(passwordEncoder());
 
         // Build and return the AuthenticationManager
@@ -0,0 +1,57 @@
+package hu.uni.restlab.config;
+
+import hu.uni.restlab.websocket.JwtHandshakeInterceptor;
+import hu.uni.restlab.websocket.UserSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+/**
+ * WebSocket configuration.
+ *
+ * Registers the user CRUD channel at /ws/users. The JWT token is checked once,
+ * at the handshake; the HTTP security chain lets the handshake through (see SecurityConfig).
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final UserSocketHandler userSocketHandler;
+    private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
+
+    @Value("${websocket.max-message-bytes:65536}")
+    private int maxMessageBytes;
+
+    @Value("${websocket.idle-timeout-ms:300000}")
+    private long idleTimeoutMillis;
+
+    public WebSocketConfig(UserSocketHandler userSocketHandler, JwtHandshakeInterceptor jwtHandshakeInterceptor) {
+        this.userSocketHandler = userSocketHandler;
+        this.jwtHandshakeInterceptor = jwtHandshakeInterceptor;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry)
+    {
+        registry.addHandler(userSocketHandler, "/ws/users")
+                .addInterceptors(jwtHandshakeInterceptor);
+    }
+
+    /**
+     * Limits of the WebSocket connections: the size of a message and the idle time
+     * after which the server closes the connection.
+     */
+    @Bean
+    public ServletServerContainerFactoryBean webSocketContainer()
+    {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(maxMessageBytes);
+        container.setMaxSessionIdleTimeout(idleTimeoutMillis);
+        return container;
+    }
+
+}
@@ -0,0 +1,175 @@
+package hu.uni.restlab.controller;
+
+import hu.uni.restlab.dto.AccountCreateRequest;
+import hu.uni.restlab.dto.AccountPageResponse;
+import hu.uni.restlab.dto.AccountResponse;
+import hu.uni.restlab.dto.AccountUpdateRequest;
+import hu.uni.restlab.security.JdbcCredentialStore;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST controller for managing the login accounts.
+ *
+ * The accounts are kept in the JdbcCredentialStore; the passwords are stored as BCrypt hashes
+ * and never returned. Only for admins (see SecurityConfig).
+ */
+@RestController
+@RequestMapping("/api/v1/admin/accounts")
+@Tag(name = "Accounts", description = "Login account management endpoints (requires JWT token with ADMIN role)")
+@SecurityRequirement(name = "Bearer Authentication")
+public class AccountController {
+
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final JdbcCredentialStore credentialStore;
+    private final PasswordEncoder passwordEncoder;
+
+    public AccountController(JdbcCredentialStore credentialStore, PasswordEncoder passwordEncoder) {
+        this.credentialStore = credentialStore;
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    // GET /api/v1/admin/accounts?after=alice&limit=50
+    @Operation(summary = "List accounts", description = "Returns one page of the accounts in username order; pass the 'next' value of a page as 'after' to get the following page")
+    @GetMapping
+    public AccountPageResponse listAccounts(@RequestParam(value = "after", required = false) String after,
+                                            @RequestParam(value = "limit", defaultValue = "50") int limit)
+    {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<AccountResponse> items = credentialStore.list(after, size).stream()
+                .map(AccountController::toResponse)
+                .toList();
+
+        String next = items.size() == size ? items.get(items.size() - 1).username() : null;
+        return new AccountPageResponse(items, next);
+    }
+
+    // GET /api/v1/admin/accounts/count
+    @Operation(summary = "Count accounts", description = "Returns the number of accounts")
+    @GetMapping("/count")
+    public Map<String, Object> countAccounts()
+    {
+        return Map.of("count", credentialStore.count());
+    }
+
+    // GET /api/v1/admin/accounts/{username}
+    @Operation(summary = "Get account", description = "Returns a single account by username")
+    @GetMapping("/{username}")
+    public ResponseEntity<AccountResponse> getAccount(@PathVariable("username") String username)
+    {
+        JdbcCredentialStore.Account account = credentialStore.find(username);
+        if (account == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok(toResponse(account));
+    }
+
+    // POST /api/v1/admin/accounts
+    @Operation(summary = "Create account", description = "Creates a new login account")
+    @PostMapping
+    public ResponseEntity<?> createAccount(@Valid @RequestBody AccountCreateRequest req)
+    {
+        UserDetails user = User.withUsername(req.username())
+                .password(passwordEncoder.encode(req.password()))
+                .roles(roles(req.roles()))
+                .build();
+
+        try {
+            credentialStore.createUser(user);
+        } catch (IllegalStateException e) {
+            // Return 409 Conflict if the username is taken
+            Map<String, Object> errorResponse = new LinkedHashMap<>();
+            errorResponse.put("error", "Conflict");
+            errorResponse.put("message", e.getMessage());
+
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+        }
+
+        URI location = URI.create("/api/v1/admin/accounts/" + req.username());
+        return ResponseEntity.created(location).body(toResponse(user));
+    }
+
+    // PUT /api/v1/admin/accounts/{username}
+    @Operation(summary = "Update account", description = "Changes the password, the enabled flag and/or the roles of an account")
+    @PutMapping("/{username}")
+    public ResponseEntity<AccountResponse> updateAccount(@PathVariable("username") String username,
+                                                         @RequestBody AccountUpdateRequest req)
+    {
+        UserDetails existing;
+        try {
+            existing = credentialStore.loadUserByUsername(username);
+        } catch (UsernameNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        User.UserBuilder builder = User.withUserDetails(existing);
+        if (req.password() != null && !req.password().isBlank()) {
+            builder.password(passwordEncoder.encode(req.password()));
+        }
+        if (req.enabled() != null) {
+            builder.disabled(!req.enabled());
+        }
+        if (req.roles() != null) {
+            builder.roles(roles(req.roles()));
+        }
+
+        UserDetails updated = builder.build();
+        try {
+            credentialStore.updateUser(updated);
+        } catch (UsernameNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok(toResponse(updated));
+    }
+
+    // DELETE /api/v1/admin/accounts/{username}
+    @Operation(summary = "Delete account", description = "Deletes a login account")
+    @DeleteMapping("/{username}")
+    public ResponseEntity<Void> deleteAccount(@PathVariable("username") String username)
+    {
+        if (!credentialStore.delete(username)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    // Roles without the ROLE_ prefix; USER if none are given.
+    private static String[] roles(List<String> roles)
+    {
+        if (roles == null || roles.isEmpty()) {
+            return new String[] {"USER"};
+        }
+        return roles.stream()
+                .map(role -> role.startsWith("ROLE_") ? role.substring(5) : role)
+                .map(String::toUpperCase)
+                .toArray(String[]::new);
+    }
+
+    private static AccountResponse toResponse(JdbcCredentialStore.Account account)
+    {
+        return new AccountResponse(account.username(), account.enabled(), account.authorities());
+    }
+
+    private static AccountResponse toResponse(UserDetails user)
+    {
+        List<String> authorities = user.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+        return new AccountResponse(user.getUsername(), user.isEnabled(), authorities);
+    }
+
+}
@@ -2,6 +2,7 @@ package hu.uni.restlab.controller;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -41,6 +42,18 @@ public class ApiExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
     }
 
+    // Handle missing roles (@PreAuthorize)
+    @ExceptionHandler(AccessDeniedException.class)
+    public ResponseEntity<Map<String, Object>> handleAccessDenied(AccessDeniedException ex)
+    {
+        Map<String, Object> body = new LinkedHashMap<>();
+
+        body.put("error", "Forbidden");
+        body.put("message", "You do not have the role required for this operation");
+
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(body);
+    }
+
     // Handle general Exception
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleGeneralException(Exception ex)
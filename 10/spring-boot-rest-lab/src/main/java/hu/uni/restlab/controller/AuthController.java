@@ -2,7 +2,13 @@ package hu.uni.restlab.controller;
 
 import hu.uni.restlab.dto.AuthRequest;
 import hu.uni.restlab.dto.AuthResponse;
+import hu.uni.restlab.dto.RefreshRequest;
 import hu.uni.restlab.jwt.JwtUtil;
+import hu.uni.restlab.jwt.JwtVerificationCache;
+import hu.uni.restlab.jwt.RefreshTokenStore;
+import hu.uni.restlab.jwt.TokenRevocationStore;
+import hu.uni.restlab.jwt.VerifiedToken;
+import hu.uni.restlab.security.LoginBulkhead;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -10,22 +16,33 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST controller for authentication.
  *
  * This controller provides an endpoint for user authentication
  * and JWT token generation.
+ *
+ * The access tokens are short-lived. Instead of logging in again (which checks the
+ * password with BCrypt, on purpose slow), clients exchange the refresh token received
+ * at login for a new access token. The password checks run on the dedicated login
+ * threads of the {@link LoginBulkhead}, so a burst of logins cannot take the worker
+ * threads from the other endpoints.
  */
 @RestController
 @RequestMapping("/api/v1/auth")
@@ -34,16 +51,35 @@ public class AuthController {
 
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
+    private final JwtVerificationCache verificationCache;
+    private final TokenRevocationStore revocationStore;
+    private final RefreshTokenStore refreshTokenStore;
+    private final UserDetailsService userDetailsService;
+    private final LoginBulkhead loginBulkhead;
 
     /**
      * Constructor for AuthController.
      *
      * @param authenticationManager     The authentication manager provided by Spring Security
      * @param jwtUtil                   The JWT utility class used for token generation and validation
+     * @param verificationCache         The cache of the verified tokens
+     * @param revocationStore           The store of the revoked tokens
+     * @param refreshTokenStore         The store of the issued refresh tokens
+     * @param userDetailsService        The user store, to check that a refreshing account is still enabled and get its roles
+     * @param loginBulkhead             The bounded executor of the password checks
      */
-    public AuthController(AuthenticationManager authenticationManager, JwtUtil jwtUtil) {
+    public AuthController(AuthenticationManager authenticationManager, JwtUtil jwtUtil,
+                          JwtVerificationCache verificationCache, TokenRevocationStore revocationStore,
+                          RefreshTokenStore refreshTokenStore, UserDetailsService userDetailsService,
+                          LoginBulkhead loginBulkhead)
+    {
         this.authenticationManager = authenticationManager;
         this.jwtUtil = jwtUtil;
+        this.verificationCache = verificationCache;
+        this.revocationStore = revocationStore;
+        this.refreshTokenStore = refreshTokenStore;
+        this.userDetailsService = userDetailsService;
+        this.loginBulkhead = loginBulkhead;
     }
 
     /**
@@ -61,7 +97,9 @@ public class AuthController {
      * {
      *   "token": "eyJhbGc...",
      *   "type": "Bearer",
-     *   "expiresIn": 86400000
+     *   "expiresIn": 900000,
+     *   "refreshToken": "q3Jx...",
+     *   "refreshExpiresIn": 604800000
      * }
      */
     @Operation(
@@ -82,10 +120,34 @@ public class AuthController {
             @ApiResponse(
                     responseCode = "400",
                     description = "Bad request - validation error"
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Too many concurrent logins - retry after the time in the Retry-After header"
             )
     })
     @PostMapping("/login")
-    public ResponseEntity<?> login(@Valid @RequestBody AuthRequest authRequest)
+    public CompletableFuture<ResponseEntity<?>> login(@Valid @RequestBody AuthRequest authRequest)
+    {
+        try {
+            // Check the password on a login thread; the worker thread is released meanwhile
+            return loginBulkhead.submit(() -> authenticate(authRequest));
+        }
+        catch (LoginBulkhead.RejectedException e)
+        {
+            // Return 503 Service Unavailable at once if too many logins are waiting
+            Map<String, Object> errorResponse = new LinkedHashMap<>();
+            errorResponse.put("error", "Service unavailable");
+            errorResponse.put("message", e.getMessage());
+
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(errorResponse));
+        }
+    }
+
+    // Checks the credentials and issues the tokens (runs on a login thread).
+    private ResponseEntity<?> authenticate(AuthRequest authRequest)
     {
         try {
             // Authenticate the user
@@ -96,17 +158,19 @@ public class AuthController {
                     )
             );
 
-            // Generate JWT token
-            String token = jwtUtil.generateToken(authentication.getName());
+            // Generate JWT token and start a new refresh token family
+            String token = jwtUtil.generateToken(authentication.getName(), authentication.getAuthorities());
+            RefreshTokenStore.Issued refresh = refreshTokenStore.issue(authentication.getName());
 
             // Return token in response
-            AuthResponse response = new AuthResponse(token, jwtUtil.getExpiration());
+            AuthResponse response = new AuthResponse(token, jwtUtil.getExpiration(), refresh.token(), refresh.expiresIn());
             return ResponseEntity.ok(response);
 
         }
-        catch (BadCredentialsException e)
+        catch (AuthenticationException e)
         {
-            // Return 401 Unauthorized if credentials are invalid
+            // Return 401 Unauthorized if credentials are invalid, or the account is disabled or locked.
+            // The same answer for every case, so it does not reveal which accounts exist.
             Map<String, Object> errorResponse = new LinkedHashMap<>();
             errorResponse.put("error", "Authentication failed");
             errorResponse.put("message", "Invalid username or password");
@@ -115,4 +179,125 @@ public class AuthController {
         }
     }
 
+    /**
+     * Exchange a refresh token for a new access token (and a new refresh token).
+     *
+     * POST /api/v1/auth/refresh
+     *
+     * Request body:
+     * {
+     *   "refreshToken": "q3Jx..."
+     * }
+     *
+     * The password is not checked again; the refresh token can be used only once.
+     */
+    @Operation(
+            summary = "Refresh the JWT token",
+            description = "Exchanges a refresh token for a new JWT token and a new refresh token. " +
+                    "Every refresh token can be used once; reusing one revokes all tokens of the login."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Successfully refreshed - returns a new JWT token and refresh token",
+                    content = @Content(schema = @Schema(implementation = AuthResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Invalid, expired, revoked or already used refresh token"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Bad request - validation error"
+            )
+    })
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@Valid @RequestBody RefreshRequest refreshRequest)
+    {
+        RefreshTokenStore.Issued refresh = refreshTokenStore.rotate(refreshRequest.refreshToken());
+
+        // The account may have been disabled or deleted since the login; the roles may have changed.
+        UserDetails account = refresh != null ? findEnabled(refresh.username()) : null;
+        if (refresh != null && account == null) {
+            refreshTokenStore.revoke(refresh.token());
+        }
+
+        if (account == null) {
+            Map<String, Object> errorResponse = new LinkedHashMap<>();
+            errorResponse.put("error", "Refresh failed");
+            errorResponse.put("message", "Invalid, expired or already used refresh token");
+
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        }
+
+        String token = jwtUtil.generateToken(account.getUsername(), account.getAuthorities());
+        return ResponseEntity.ok(new AuthResponse(token, jwtUtil.getExpiration(), refresh.token(), refresh.expiresIn()));
+    }
+
+    /**
+     * Revoke the JWT token of the caller.
+     *
+     * POST /api/v1/auth/logout
+     * Authorization: Bearer {token}
+     *
+     * Optional request body:
+     * {
+     *   "refreshToken": "q3Jx..."
+     * }
+     *
+     * The token is rejected from now on, until it expires. If the refresh token
+     * is sent too, it (and every refresh token of the same login) is revoked as well.
+     */
+    @Operation(
+            summary = "Logout (revoke the JWT token)",
+            description = "Revokes the token sent in the Authorization header, so it can no longer be used. " +
+                    "The refresh token in the request body (optional) is revoked as well."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "The token was revoked"),
+            @ApiResponse(responseCode = "401", description = "Missing, invalid or expired token")
+    })
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(value = "Authorization", required = false) String authHeader,
+                                    @RequestBody(required = false) RefreshRequest refreshRequest)
+    {
+        boolean refreshRevoked = refreshRequest != null && refreshRequest.refreshToken() != null
+                && refreshTokenStore.revoke(refreshRequest.refreshToken());
+
+        VerifiedToken verified = null;
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            String token = authHeader.substring(7);
+            verified = verificationCache.verify(token);
+            if (verified != null && verified.tokenId() != null) {
+                revocationStore.revoke(verified.tokenId(), verified.expiresAt());
+                verificationCache.evict(token);
+                return ResponseEntity.noContent().build();
+            }
+        }
+
+        // Only the refresh token was sent (e.g. the access token has already expired).
+        if (refreshRevoked && authHeader == null) {
+            return ResponseEntity.noContent().build();
+        }
+
+        Map<String, Object> errorResponse = new LinkedHashMap<>();
+        errorResponse.put("error", "Logout failed");
+        errorResponse.put("message", verified == null
+                ? "Missing, invalid or expired token"
+                : "The token has no id, it cannot be revoked");
+
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+    }
+
+    // Returns the account if it still exists and may log in, null otherwise.
+    private UserDetails findEnabled(String username)
+    {
+        try {
+            UserDetails user = userDetailsService.loadUserByUsername(username);
+            return user.isEnabled() && user.isAccountNonLocked() && user.isAccountNonExpired() ? user : null;
+        } catch (UsernameNotFoundException e) {
+            return null;
+        }
+    }
+
 }
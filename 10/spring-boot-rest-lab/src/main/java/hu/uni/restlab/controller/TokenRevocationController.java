@@ -0,0 +1,56 @@
+package hu.uni.restlab.controller;
+
+import hu.uni.restlab.dto.TokenRevocationRequest;
+import hu.uni.restlab.jwt.JwtUtil;
+import hu.uni.restlab.jwt.TokenRevocationStore;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * REST controller for revoking JWT tokens of other users.
+ *
+ * Tokens are identified by their id ("jti" claim). Only for admins (see SecurityConfig).
+ */
+@RestController
+@RequestMapping("/api/v1/admin/revocations")
+@Tag(name = "Token revocation", description = "Revoke JWT tokens by id (requires JWT token with ADMIN role)")
+@SecurityRequirement(name = "Bearer Authentication")
+public class TokenRevocationController {
+
+    private final TokenRevocationStore revocationStore;
+    private final JwtUtil jwtUtil;
+
+    public TokenRevocationController(TokenRevocationStore revocationStore, JwtUtil jwtUtil) {
+        this.revocationStore = revocationStore;
+        this.jwtUtil = jwtUtil;
+    }
+
+    // GET /api/v1/admin/revocations
+    @Operation(summary = "Count revoked tokens", description = "Returns the number of revoked tokens that have not expired yet")
+    @GetMapping
+    public Map<String, Object> count()
+    {
+        return Map.of("revoked", revocationStore.size());
+    }
+
+    // POST /api/v1/admin/revocations
+    @Operation(summary = "Revoke a token", description = "Revokes a token by its id (jti claim); it is rejected until it expires")
+    @PostMapping
+    public ResponseEntity<Void> revoke(@Valid @RequestBody TokenRevocationRequest req)
+    {
+        // Without the expiration time keep the id for the longest possible lifetime of a token.
+        long expiresAt = req.expiresAt() != null
+                ? req.expiresAt()
+                : System.currentTimeMillis() + jwtUtil.getExpiration();
+
+        revocationStore.revoke(req.tokenId(), expiresAt);
+        return ResponseEntity.noContent().build();
+    }
+
+}
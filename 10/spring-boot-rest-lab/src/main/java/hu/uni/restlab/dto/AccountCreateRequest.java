@@ -0,0 +1,22 @@
+package hu.uni.restlab.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Data record representing an account creation request.
+ *
+ * The roles are given without the "ROLE_" prefix (e.g. USER, ADMIN); USER if not given.
+ */
+public record AccountCreateRequest(
+        @NotBlank(message = "Username is required")
+        @Size(max = 100, message = "Username must be at most 100 characters")
+        String username,
+
+        @NotBlank(message = "Password is required")
+        String password,
+
+        List<String> roles
+) { }
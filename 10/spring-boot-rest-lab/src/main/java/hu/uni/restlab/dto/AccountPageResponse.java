@@ -0,0 +1,14 @@
+package hu.uni.restlab.dto;
+
+import java.util.List;
+
+/**
+ * Data record representing one page of the account list.
+ *
+ * @param items the accounts of the page, in username order
+ * @param next the value of the "after" parameter of the next page, null on the last page
+ */
+public record AccountPageResponse(
+        List<AccountResponse> items,
+        String next
+) { }
@@ -0,0 +1,12 @@
+package hu.uni.restlab.dto;
+
+import java.util.List;
+
+/**
+ * Data record representing an account in responses (without the password).
+ */
+public record AccountResponse(
+        String username,
+        boolean enabled,
+        List<String> authorities
+) { }
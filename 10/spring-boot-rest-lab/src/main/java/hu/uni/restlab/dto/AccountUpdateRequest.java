@@ -0,0 +1,14 @@
+package hu.uni.restlab.dto;
+
+import java.util.List;
+
+/**
+ * Data record representing an account update request.
+ *
+ * Only the given (non-null) fields are changed.
+ */
+public record AccountUpdateRequest(
+        String password,
+        Boolean enabled,
+        List<String> roles
+) { }
@@ -3,18 +3,21 @@ package hu.uni.restlab.dto;
 /**
  * Data record representing an authentication response.
  *
- * This record is used to transfer JWT token in authentication responses.
+ * This record is used to transfer JWT token in authentication responses,
+ * together with the refresh token that can be exchanged for the next one.
  */
 public record AuthResponse(
         String token,
         String type,
-        long expiresIn
+        long expiresIn,
+        String refreshToken,
+        long refreshExpiresIn
 ) {
     /**
      * Constructor with default token type "Bearer".
      */
-    public AuthResponse(String token, long expiresIn) {
-        this(token, "Bearer", expiresIn);
+    public AuthResponse(String token, long expiresIn, String refreshToken, long refreshExpiresIn) {
+        this(token, "Bearer", expiresIn, refreshToken, refreshExpiresIn);
     }
 
 }
@@ -0,0 +1,13 @@
+package hu.uni.restlab.dto;
+
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * Data record representing a token refresh request.
+ *
+ * This record is used to transfer the refresh token received at login (or at the previous refresh).
+ */
+public record RefreshRequest(
+        @NotBlank(message = "Refresh token is required")
+        String refreshToken
+) { }
@@ -0,0 +1,16 @@
+package hu.uni.restlab.dto;
+
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * Data record representing a token revocation request.
+ *
+ * The expiration time is optional: when it is not known, the token id is kept
+ * for the longest possible lifetime of a token.
+ */
+public record TokenRevocationRequest(
+        @NotBlank(message = "Token id is required")
+        String tokenId,
+
+        Long expiresAt
+) { }
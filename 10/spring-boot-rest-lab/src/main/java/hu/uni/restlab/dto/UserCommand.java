@@ -0,0 +1,20 @@
+package hu.uni.restlab.dto;
+
+/**
+ * Data record representing a command sent over the user WebSocket channel.
+ *
+ * @param id the correlation id chosen by the client, echoed in the result
+ * @param op the operation: list, get, create, update, delete, or auth (renew the token of the connection)
+ * @param userId the id of the user (get, update, delete)
+ * @param name the user's name (create, update)
+ * @param email the user's email address (create, update)
+ * @param token the new JWT token (auth)
+ */
+public record UserCommand(
+        String id,
+        String op,
+        Long userId,
+        String name,
+        String email,
+        String token
+) { }
@@ -0,0 +1,53 @@
+package hu.uni.restlab.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data record representing the result of a command on the user WebSocket channel.
+ *
+ * Every result carries the correlation id of its command and an HTTP-like
+ * status code, so a client can have many commands in flight.
+ *
+ * @param id the correlation id of the command
+ * @param op the operation name
+ * @param status the status code (200, 201, 204, 400, 401, 403 or 404)
+ * @param user the resulting user (get, create, update)
+ * @param users the users (list)
+ * @param error the error message if the command failed
+ * @param fields the validation errors per field if the command was invalid
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserCommandResult(
+        String id,
+        String op,
+        int status,
+        UserResponse user,
+        List<UserResponse> users,
+        String error,
+        Map<String, String> fields
+) {
+    /**
+     * Result of a successful command.
+     */
+    public static UserCommandResult ok(String id, String op, int status, UserResponse user) {
+        return new UserCommandResult(id, op, status, user, null, null, null);
+    }
+
+    /**
+     * Result of a successful list command.
+     */
+    public static UserCommandResult list(String id, String op, List<UserResponse> users) {
+        return new UserCommandResult(id, op, 200, null, users, null, null);
+    }
+
+    /**
+     * Result of a failed command.
+     */
+    public static UserCommandResult failed(String id, String op, int status, String error, Map<String, String> fields) {
+        return new UserCommandResult(id, op, status, null, null, error, fields);
+    }
+
+}
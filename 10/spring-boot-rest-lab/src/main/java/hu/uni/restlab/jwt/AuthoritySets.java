@@ -0,0 +1,74 @@
+package hu.uni.restlab.jwt;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical, immutable authority sets for the "roles" claim of the tokens.
+ *
+ * There are only a few distinct role combinations, so each one is built once and
+ * shared by every token that carries it: verifying a token does not allocate
+ * GrantedAuthority objects, and the authorization checks of the requests need no
+ * lookup in the account store. The common combinations are built at startup; the
+ * number of combinations kept is bounded, so tokens with made-up role lists cannot
+ * fill the memory (they still work, they are just not shared).
+ */
+@Component
+public class AuthoritySets {
+
+    private static final int MAX_SETS = 1024;
+
+    private final ConcurrentHashMap<String, List<GrantedAuthority>> sets = new ConcurrentHashMap<>();
+
+    public AuthoritySets()
+    {
+        forNames(List.of());
+        forNames(List.of("ROLE_USER"));
+        forNames(List.of("ROLE_ADMIN"));
+        forNames(List.of("ROLE_ADMIN", "ROLE_USER"));
+    }
+
+    /**
+     * Returns the authority set of a "roles" claim.
+     *
+     * @param names the authority names (e.g. ROLE_USER), in any order; null means none
+     * @return the shared immutable set, in name order
+     */
+    public List<GrantedAuthority> forNames(Collection<String> names)
+    {
+        // Sorted and without duplicates, so the same roles in another order map to the same set.
+        TreeSet<String> sorted = names != null ? new TreeSet<>(names) : new TreeSet<>();
+        String key = String.join(",", sorted);
+
+        List<GrantedAuthority> set = sets.get(key);
+        if (set != null) {
+            return set;
+        }
+
+        set = sorted.stream().<GrantedAuthority>map(SimpleGrantedAuthority::new).toList();
+        if (sets.size() >= MAX_SETS) {
+            return set;
+        }
+        List<GrantedAuthority> existing = sets.putIfAbsent(key, set);
+        return existing != null ? existing : set;
+    }
+
+    /**
+     * Returns the names of the given authorities, for the "roles" claim.
+     */
+    public static List<String> names(Collection<? extends GrantedAuthority> authorities)
+    {
+        return authorities.stream()
+                .map(GrantedAuthority::getAuthority)
+                .sorted()
+                .distinct()
+                .toList();
+    }
+
+}
@@ -11,21 +11,23 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.ArrayList;
 
 /**
  * JWT authentication filter that intercepts requests and validates JWT tokens.
  *
  * This filter extracts the JWT token from the Authorization header,
  * validates it, and sets the authentication in the security context.
+ * Revoked tokens are treated as invalid.
  */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    private final JwtUtil jwtUtil;
+    private final JwtVerificationCache verificationCache;
+    private final TokenRevocationStore revocationStore;
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil) {
-        this.jwtUtil = jwtUtil;
+    public JwtAuthenticationFilter(JwtVerificationCache verificationCache, TokenRevocationStore revocationStore) {
+        this.verificationCache = verificationCache;
+        this.revocationStore = revocationStore;
     }
 
     @Override
@@ -41,14 +43,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             // Extract the token (remove "Bearer " prefix)
             String token = authHeader.substring(7);
 
-            // Validate the token
-            if (jwtUtil.validateToken(token)) {
-                // Extract username from token
-                String username = jwtUtil.extractUsername(token);
+            // Validate the token; it is parsed at most once, and not at all if it was verified before
+            VerifiedToken verified = verificationCache.verify(token);
 
-                // Create authentication object
+            // Reject revoked tokens (logout / admin revoke); a Bloom filter test in most cases
+            if (verified != null && !revocationStore.isRevoked(verified.tokenId())) {
+                // Create authentication object from the cached principal and authorities
                 UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(username, null, new ArrayList<>());
+                        new UsernamePasswordAuthenticationToken(verified.username(), null, verified.authorities());
 
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
@@ -0,0 +1,218 @@
+package hu.uni.restlab.jwt;
+
+import io.jsonwebtoken.Header;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.ProtectedHeader;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.Key;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The signing keys of the JWT tokens, identified by key id ("kid" header).
+ *
+ * New tokens are signed with the active key; tokens signed with a retired key are still
+ * accepted until the key is removed from the ring. The keys come either from the
+ * configuration (jwt.secret + jwt.retired-keys) or from a key file (jwt.key-file),
+ * which is watched in the background, so a key can be rotated without a restart:
+ * <ol>
+ *     <li>add the new key to the file (still not active, so every instance accepts it),</li>
+ *     <li>make it the active key,</li>
+ *     <li>remove the old key once the tokens signed with it have expired.</li>
+ * </ol>
+ * The keys are derived once per load and published as one immutable ring, so readers
+ * never lock and never see a half-updated set of keys.
+ *
+ * Key file format (Java properties):
+ * <pre>
+ * active=2026-10
+ * 2026-10=a-secret-of-at-least-32-bytes...
+ * 2026-09=the-previous-secret...
+ * </pre>
+ */
+@Component
+public class JwtKeyRing {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtKeyRing.class);
+
+    private static final String ACTIVE = "active";
+
+    /**
+     * An immutable set of keys.
+     *
+     * @param activeKeyId the id of the key used for signing
+     * @param keys the keys accepted for verification, by id (the active key included)
+     * @param modified the modification time of the key file it was loaded from, null if not from a file
+     */
+    record Ring(String activeKeyId, Map<String, SecretKey> keys, FileTime modified) {
+
+        SecretKey activeKey() {
+            return keys.get(activeKeyId);
+        }
+    }
+
+    private final Path keyFile;
+    private volatile Ring ring;
+    private ScheduledExecutorService watcher;
+    private FileTime rejected;    // modification time of a broken key file, reported only once
+
+    public JwtKeyRing(
+            @Value("${jwt.secret}") String secret,
+            @Value("${jwt.key-id:default}") String keyId,
+            @Value("${jwt.retired-keys:}") String retiredKeys,
+            @Value("${jwt.key-file:}") String keyFile,
+            @Value("${jwt.key-reload-seconds:30}") long reloadSeconds)
+    {
+        if (keyFile.isBlank()) {
+            this.keyFile = null;
+            this.ring = fromConfiguration(keyId, secret, retiredKeys);
+            return;
+        }
+
+        this.keyFile = Path.of(keyFile);
+        try {
+            this.ring = load(this.keyFile);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read the JWT key file " + keyFile, e);
+        }
+
+        watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jwt-key-ring-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(this::reloadIfChanged, reloadSeconds, reloadSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the current keys.
+     */
+    Ring current() {
+        return ring;
+    }
+
+    /**
+     * Tells whether tokens signed with the given key are still accepted.
+     */
+    boolean accepts(String keyId) {
+        return ring.keys().containsKey(keyId);
+    }
+
+    /**
+     * Finds the verification key of a token by its "kid" header (a JJWT key locator).
+     * Tokens without a key id were issued before key ids were used: they are checked
+     * with the active key.
+     *
+     * @throws JwtException if the key is unknown (never existed or already removed)
+     */
+    Key locate(Header header)
+    {
+        Ring r = ring;
+        String keyId = header instanceof ProtectedHeader protectedHeader ? protectedHeader.getKeyId() : null;
+        if (keyId == null) {
+            return r.activeKey();
+        }
+
+        SecretKey key = r.keys().get(keyId);
+        if (key == null) {
+            throw new JwtException("Unknown signing key: " + keyId);
+        }
+        return key;
+    }
+
+    // Reloads the key file if it was modified. A broken file is reported and the previous
+    // keys stay in use, so a bad edit cannot lock out every user.
+    void reloadIfChanged()
+    {
+        try {
+            FileTime modified = Files.getLastModifiedTime(keyFile);
+            if (modified.equals(ring.modified()) || modified.equals(rejected)) {
+                return;
+            }
+            rejected = modified;
+            Ring loaded = load(keyFile);
+            if (!loaded.activeKeyId().equals(ring.activeKeyId()) || !loaded.keys().keySet().equals(ring.keys().keySet())) {
+                log.info("JWT key ring reloaded: active key {}, accepted keys {}", loaded.activeKeyId(), loaded.keys().keySet());
+            }
+            ring = loaded;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot reload the JWT key file {}, keeping the current keys: {}", keyFile, e.getMessage());
+        }
+    }
+
+    private static Ring fromConfiguration(String keyId, String secret, String retiredKeys)
+    {
+        Map<String, SecretKey> keys = new LinkedHashMap<>();
+        keys.put(keyId, key(keyId, secret));
+
+        // Comma-separated id=secret pairs.
+        for (String entry : retiredKeys.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int eq = entry.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Invalid jwt.retired-keys entry, expected id=secret");
+            }
+            String id = entry.substring(0, eq).trim();
+            keys.putIfAbsent(id, key(id, entry.substring(eq + 1).trim()));
+        }
+        return new Ring(keyId, Map.copyOf(keys), null);
+    }
+
+    private static Ring load(Path file) throws IOException
+    {
+        FileTime modified = Files.getLastModifiedTime(file);
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        String activeKeyId = properties.getProperty(ACTIVE);
+        Map<String, SecretKey> keys = new LinkedHashMap<>();
+        for (String id : properties.stringPropertyNames()) {
+            if (!id.equals(ACTIVE)) {
+                keys.put(id, key(id, properties.getProperty(id)));
+            }
+        }
+        if (activeKeyId == null || !keys.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("The key file has no active key: " + file);
+        }
+        return new Ring(activeKeyId, Map.copyOf(keys), modified);
+    }
+
+    private static SecretKey key(String id, String secret)
+    {
+        byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < 32) {
+            throw new IllegalArgumentException("The JWT key " + id + " must be at least 32 bytes long");
+        }
+        return Keys.hmacShaKeyFor(bytes);
+    }
+
+    @PreDestroy
+    void close()
+    {
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+    }
+
+}
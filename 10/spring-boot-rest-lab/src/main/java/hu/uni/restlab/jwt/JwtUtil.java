@@ -1,96 +1,110 @@
 package hu.uni.restlab.jwt;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * Utility class for JWT token generation and validation.
  *
  * This class provides methods to create and parse JWT tokens for authentication.
+ * Requests verify their tokens through the JwtVerificationCache, which also checks
+ * the revocation list; this class has no other verification path.
+ * The tokens carry the authorities of the user in the "roles" claim, so the
+ * authorization of a request needs no lookup in the account store.
  */
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
-    private String secret;
-
     @Value("${jwt.expiration}")
     private long expiration;
 
-    /**
-     * Generate a secret key from the configured secret string.
-     */
-    private SecretKey getSigningKey()
+    private static final String ROLES_CLAIM = "roles";
+
+    private final JwtKeyRing keyRing;
+    private final AuthoritySets authoritySets;
+
+    // The parser is immutable and thread-safe, so it is built only once;
+    // it picks the verification key of each token from the key ring by its "kid" header.
+    private final JwtParser parser;
+
+    public JwtUtil(JwtKeyRing keyRing, AuthoritySets authoritySets)
     {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.keyRing = keyRing;
+        this.authoritySets = authoritySets;
+        this.parser = Jwts.parser()
+                .keyLocator(keyRing::locate)
+                .build();
     }
 
     /**
      * Generate a JWT token for the given username.
      *
      * @param username the username to include in the token
+     * @param authorities the authorities of the user (e.g. ROLE_USER), put into the "roles" claim
      * @return the generated JWT token
      */
-    public String generateToken(String username)
+    public String generateToken(String username, Collection<? extends GrantedAuthority> authorities)
     {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + expiration);
+        JwtKeyRing.Ring keys = keyRing.current();
 
         return Jwts.builder()
+                .header().keyId(keys.activeKeyId()).and()
+                .id(UUID.randomUUID().toString())
                 .subject(username)
+                .claim(ROLES_CLAIM, AuthoritySets.names(authorities))
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(keys.activeKey())
                 .compact();
     }
 
     /**
-     * Extract the username from a JWT token.
+     * Verify a JWT token and extract everything the authentication needs, in one parse.
      *
      * @param token the JWT token
-     * @return the username from the token
-     */
-    public String extractUsername(String token)
-    {
-        return extractClaims(token).getSubject();
-    }
-
-    /**
-     * Validate a JWT token.
-     *
-     * @param token the JWT token to validate
-     * @return true if the token is valid, false otherwise
+     * @return the principal, its authorities, the id and expiration time of the token and its signing key
+     * @throws JwtException if the token is invalid or expired
+     * @throws IllegalArgumentException if the token is empty
      */
-    public boolean validateToken(String token)
+    public VerifiedToken verify(String token)
     {
-        try {
-            extractClaims(token);
-            return true;
-        } catch (Exception e) {
-            return false;
+        Jws<Claims> jws = parser.parseSignedClaims(token);
+        Claims claims = jws.getPayload();
+        String keyId = jws.getHeader().getKeyId();
+        if (keyId == null) {
+            keyId = keyRing.current().activeKeyId();
         }
+
+        // The shared, precomputed authority set of the roles (none for tokens issued without roles)
+        List<String> roles = claims.get(ROLES_CLAIM) instanceof Collection<?> names
+                ? names.stream().map(String::valueOf).toList()
+                : List.of();
+
+        return new VerifiedToken(claims.getSubject(), authoritySets.forNames(roles), claims.getId(),
+                claims.getExpiration().getTime(), keyId);
     }
 
     /**
-     * Extract claims from a JWT token.
+     * Tell whether tokens signed with the given key are still accepted (the key was not removed).
      *
-     * @param token the JWT token
-     * @return the claims from the token
+     * @param keyId the key id
+     * @return true if the key is in the key ring
      */
-    private Claims extractClaims(String token)
-    {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    public boolean isKeyAccepted(String keyId) {
+        return keyRing.accepts(keyId);
     }
 
     /**
@@ -0,0 +1,142 @@
+package hu.uni.restlab.jwt;
+
+import io.jsonwebtoken.JwtException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of verified JWT tokens.
+ *
+ * Verifying a token (HMAC over the token + JSON parsing of the claims) costs far
+ * more than hashing it, so a token is verified once and then recognized by its
+ * SHA-256 digest until it expires. The raw tokens are not kept in memory.
+ * An entry is never used after the token's exp or after its signing key was removed
+ * from the key ring, and expired entries are purged in the background.
+ */
+@Component
+public class JwtVerificationCache {
+
+    private final JwtUtil jwtUtil;
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, VerifiedToken> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService purger;
+
+    public JwtVerificationCache(JwtUtil jwtUtil,
+                                @Value("${jwt.cache.max-entries:10000}") int maxEntries,
+                                @Value("${jwt.cache.purge-interval-seconds:60}") long purgeIntervalSeconds)
+    {
+        this.jwtUtil = jwtUtil;
+        this.maxEntries = maxEntries;
+
+        this.purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jwt-cache-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        purger.scheduleWithFixedDelay(this::purgeExpired, purgeIntervalSeconds, purgeIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Verify a token, parsing it only if it is not cached yet.
+     *
+     * @param token the JWT token
+     * @return the verified token, or null if the token is invalid or expired
+     */
+    public VerifiedToken verify(String token)
+    {
+        String key = digest(token);
+
+        VerifiedToken cached = entries.get(key);
+        if (cached != null) {
+            if (isUsable(cached)) {
+                return cached;
+            }
+            entries.remove(key, cached);
+            return null;
+        }
+
+        // Cache miss: verify and parse the token once.
+        VerifiedToken verified;
+        try {
+            verified = jwtUtil.verify(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+
+        if (entries.size() >= maxEntries) {
+            makeRoom();
+        }
+        entries.put(key, verified);
+        return verified;
+    }
+
+    /**
+     * Check that a verified token may still be used: it has not expired and its signing key
+     * is still in the key ring. Revocation is checked separately by the caller.
+     *
+     * @param token the verified token
+     * @return true if the token is still usable
+     */
+    public boolean isUsable(VerifiedToken token)
+    {
+        return token.expiresAt() > System.currentTimeMillis() && jwtUtil.isKeyAccepted(token.keyId());
+    }
+
+    /**
+     * Drop a token from the cache (e.g. after it was revoked).
+     *
+     * @param token the JWT token
+     */
+    public void evict(String token)
+    {
+        entries.remove(digest(token));
+    }
+
+    // Removes the expired entries.
+    void purgeExpired()
+    {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt() <= now);
+    }
+
+    // Keeps the cache bounded: drop expired entries first, then about a tenth of the rest.
+    private void makeRoom()
+    {
+        purgeExpired();
+        int excess = entries.size() - maxEntries + Math.max(1, maxEntries / 10);
+        Iterator<String> it = entries.keySet().iterator();
+        while (excess-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    // SHA-256 of the token, Base64 encoded.
+    private static String digest(String token)
+    {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @PreDestroy
+    void close()
+    {
+        purger.shutdownNow();
+    }
+
+}
@@ -0,0 +1,172 @@
+package hu.uni.restlab.jwt;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The issued refresh tokens.
+ *
+ * A refresh token is a random opaque string, exchanged for a new short-lived access token
+ * without checking the password again (no BCrypt). Refresh tokens rotate: every token can
+ * be used once, and the exchange returns its successor. All tokens descending from the same
+ * login form a family; if an already used token is presented again (it was stolen, or the
+ * client replayed it), the whole family is revoked, so the thief and the client both have
+ * to log in again.
+ *
+ * Only the SHA-256 digests of the tokens are kept. Expired entries are purged in the background.
+ */
+@Component
+public class RefreshTokenStore {
+
+    /**
+     * A refresh token.
+     *
+     * @param username the user the token was issued to
+     * @param familyId the id of the login the token descends from
+     * @param expiresAt the expiration time in epoch milliseconds
+     * @param used true if the token was already exchanged
+     */
+    private record Entry(String username, String familyId, long expiresAt, boolean used) { }
+
+    /**
+     * A newly issued refresh token.
+     *
+     * @param token the token to hand out to the client
+     * @param username the user the token was issued to
+     * @param expiresIn the lifetime of the token in milliseconds
+     */
+    public record Issued(String token, String username, long expiresIn) { }
+
+    private final SecureRandom random = new SecureRandom();
+    private final ConcurrentHashMap<String, Entry> tokens = new ConcurrentHashMap<>();
+    // Revoked families, with the time they can be forgotten (when their last token expires).
+    private final ConcurrentHashMap<String, Long> revokedFamilies = new ConcurrentHashMap<>();
+    private final long expiration;
+    private final ScheduledExecutorService purger;
+
+    public RefreshTokenStore(@Value("${jwt.refresh.expiration:604800000}") long expiration,
+                             @Value("${jwt.refresh.purge-interval-seconds:300}") long purgeIntervalSeconds)
+    {
+        this.expiration = expiration;
+
+        this.purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jwt-refresh-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        purger.scheduleWithFixedDelay(this::purgeExpired, purgeIntervalSeconds, purgeIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Issue the first refresh token of a login (a new family).
+     *
+     * @param username the authenticated user
+     * @return the new refresh token
+     */
+    public Issued issue(String username)
+    {
+        return issue(username, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Exchange a refresh token for its successor. The presented token cannot be used again.
+     *
+     * @param token the refresh token sent by the client
+     * @return the successor token, or null if the token is unknown, expired, revoked or was already used
+     */
+    public Issued rotate(String token)
+    {
+        String key = digest(token);
+        Entry entry = tokens.get(key);
+        long now = System.currentTimeMillis();
+        if (entry == null || entry.expiresAt() <= now || revokedFamilies.containsKey(entry.familyId())) {
+            return null;
+        }
+
+        // Mark the token used; of two concurrent exchanges of the same token only one succeeds.
+        if (entry.used() || !tokens.replace(key, entry, new Entry(entry.username(), entry.familyId(), entry.expiresAt(), true))) {
+            // Reuse of a rotated token: revoke every token of the login.
+            revokeFamily(entry.familyId());
+            return null;
+        }
+
+        return issue(entry.username(), entry.familyId());
+    }
+
+    /**
+     * Revoke a refresh token and every token of the same login (logout).
+     *
+     * @param token the refresh token sent by the client
+     * @return true if the token was known
+     */
+    public boolean revoke(String token)
+    {
+        Entry entry = tokens.get(digest(token));
+        if (entry == null) {
+            return false;
+        }
+        revokeFamily(entry.familyId());
+        return true;
+    }
+
+    /**
+     * Returns the lifetime of the refresh tokens in milliseconds.
+     */
+    public long getExpiration() {
+        return expiration;
+    }
+
+    private Issued issue(String username, String familyId)
+    {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        tokens.put(digest(token), new Entry(username, familyId, System.currentTimeMillis() + expiration, false));
+        return new Issued(token, username, expiration);
+    }
+
+    private void revokeFamily(String familyId)
+    {
+        // Every token of the family expires within one lifetime from now.
+        revokedFamilies.put(familyId, System.currentTimeMillis() + expiration);
+    }
+
+    // Removes the expired tokens and the revoked families that no longer have live tokens.
+    void purgeExpired()
+    {
+        long now = System.currentTimeMillis();
+        tokens.values().removeIf(entry -> entry.expiresAt() <= now || revokedFamilies.containsKey(entry.familyId()));
+        revokedFamilies.values().removeIf(forgetAt -> forgetAt <= now);
+    }
+
+    // SHA-256 of the token, Base64 encoded.
+    private static String digest(String token)
+    {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @PreDestroy
+    void close()
+    {
+        purger.shutdownNow();
+    }
+
+}
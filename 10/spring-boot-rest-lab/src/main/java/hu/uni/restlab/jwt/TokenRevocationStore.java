@@ -0,0 +1,110 @@
+package hu.uni.restlab.jwt;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ids ("jti" claim) of the revoked JWT tokens.
+ *
+ * Almost every token checked is not revoked, so the ids are also added to a Bloom filter:
+ * a request pays for a few bit tests, and the exact lookup is done only when the filter
+ * reports a possible hit. An id is kept until the token it belongs to expires (after that
+ * the token is rejected anyway); expired ids are purged in the background, and the filter
+ * is rebuilt from the remaining ids, since entries cannot be removed from a Bloom filter.
+ */
+@Component
+public class TokenRevocationStore {
+
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+    private final long expectedEntries;
+    private final double falsePositiveRate;
+    private final ScheduledExecutorService purger;
+    private volatile BloomFilter filter;
+    private long filterCapacity;    // the number of entries the current filter was sized for
+
+    public TokenRevocationStore(@Value("${jwt.revocation.expected-entries:100000}") long expectedEntries,
+                                @Value("${jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate,
+                                @Value("${jwt.revocation.purge-interval-seconds:300}") long purgeIntervalSeconds)
+    {
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new BloomFilter(expectedEntries, falsePositiveRate);
+        this.filterCapacity = expectedEntries;
+
+        this.purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jwt-revocation-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        purger.scheduleWithFixedDelay(this::purgeExpired, purgeIntervalSeconds, purgeIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Revoke a token.
+     *
+     * @param tokenId the id of the token ("jti" claim)
+     * @param expiresAt the expiration time of the token in epoch milliseconds; the id is kept until then
+     */
+    public void revoke(String tokenId, long expiresAt)
+    {
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        // Serialized with the rebuild of the filter, so an id added meanwhile is not lost.
+        // Revocations are rare; the read path below never locks.
+        synchronized (this) {
+            revoked.merge(tokenId, expiresAt, Math::max);
+            filter.add(tokenId);
+        }
+    }
+
+    /**
+     * Tell whether a token was revoked.
+     *
+     * @param tokenId the id of the token, may be null (tokens issued without an id cannot be revoked)
+     * @return true if the token was revoked
+     */
+    public boolean isRevoked(String tokenId)
+    {
+        if (tokenId == null || !filter.mightContain(tokenId)) {
+            return false;
+        }
+        return revoked.containsKey(tokenId);
+    }
+
+    /**
+     * Returns the number of revoked tokens that have not expired yet.
+     */
+    public int size() {
+        return revoked.size();
+    }
+
+    // Drops the ids of the expired tokens and rebuilds the filter without them.
+    // The filter also grows if more tokens were revoked than it was sized for, to keep the false positive rate.
+    synchronized void purgeExpired()
+    {
+        long now = System.currentTimeMillis();
+        boolean removed = revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        if (!removed && revoked.size() <= filterCapacity) {
+            return;
+        }
+
+        filterCapacity = Math.max(expectedEntries, 2L * revoked.size());
+        BloomFilter rebuilt = new BloomFilter(filterCapacity, falsePositiveRate);
+        revoked.keySet().forEach(rebuilt::add);
+        filter = rebuilt;
+    }
+
+    @PreDestroy
+    void close()
+    {
+        purger.shutdownNow();
+    }
+
+}
@@ -0,0 +1,22 @@
+package hu.uni.restlab.jwt;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * The result of a successful JWT verification.
+ *
+ * @param username the subject of the token
+ * @param authorities the granted authorities of the subject
+ * @param tokenId the id of the token ("jti" claim), null for tokens issued without an id
+ * @param expiresAt the expiration time of the token in epoch milliseconds
+ * @param keyId the id of the key the token was signed with
+ */
+public record VerifiedToken(
+        String username,
+        Collection<? extends GrantedAuthority> authorities,
+        String tokenId,
+        long expiresAt,
+        String keyId
+) { }
@@ -0,0 +1,133 @@
+package hu.uni.restlab.ratelimit;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiting filter.
+ *
+ * The logins are limited per client IP (the password check is expensive), the user
+ * endpoints per authenticated user (the JWT subject), so one noisy client cannot use
+ * up the capacity of the whole instance. It runs after the JWT filter in the security
+ * chain, so the subject of the token is already known.
+ *
+ * Every limited response carries the RateLimit-Limit, RateLimit-Remaining and
+ * RateLimit-Reset headers; a rejected request gets 429 Too Many Requests with Retry-After.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String LOGIN_PATH = "/api/v1/auth/login";
+    private static final String USERS_PATH = "/api/v1/users";
+
+    private final boolean enabled;
+    private final boolean trustForwardedFor;
+    private final RateLimiter loginLimiter;
+    private final RateLimiter usersLimiter;
+    private final ScheduledExecutorService evictor;
+
+    public RateLimitFilter(
+            @Value("${rate-limit.enabled:true}") boolean enabled,
+            @Value("${rate-limit.trust-forwarded-for:false}") boolean trustForwardedFor,
+            @Value("${rate-limit.stripes:64}") int stripes,
+            @Value("${rate-limit.max-keys:100000}") int maxKeys,
+            @Value("${rate-limit.evict-interval-seconds:60}") long evictIntervalSeconds,
+            @Value("${rate-limit.login.capacity:10}") long loginCapacity,
+            @Value("${rate-limit.login.refill-per-second:0.5}") double loginRefill,
+            @Value("${rate-limit.users.capacity:200}") long usersCapacity,
+            @Value("${rate-limit.users.refill-per-second:100}") double usersRefill)
+    {
+        this.enabled = enabled;
+        this.trustForwardedFor = trustForwardedFor;
+        this.loginLimiter = new RateLimiter(loginCapacity, loginRefill, stripes, maxKeys);
+        this.usersLimiter = new RateLimiter(usersCapacity, usersRefill, stripes, maxKeys);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limit-evict");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(() -> {
+            loginLimiter.evictIdle();
+            usersLimiter.evictIdle();
+        }, evictIntervalSeconds, evictIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request)
+    {
+        if (!enabled) {
+            return true;
+        }
+        String path = request.getServletPath();
+        return !path.equals(LOGIN_PATH) && !path.equals(USERS_PATH) && !path.startsWith(USERS_PATH + "/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException
+    {
+        RateLimiter.Decision decision;
+        if (request.getServletPath().equals(LOGIN_PATH)) {
+            decision = loginLimiter.tryAcquire(clientIp(request));
+        } else {
+            // Per user; requests without a valid token are limited per IP (they are rejected later anyway)
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            String key = authentication != null && authentication.isAuthenticated()
+                    ? "user:" + authentication.getName()
+                    : "ip:" + clientIp(request);
+            decision = usersLimiter.tryAcquire(key);
+        }
+
+        response.setHeader("RateLimit-Limit", String.valueOf(decision.limit()));
+        response.setHeader("RateLimit-Remaining", String.valueOf(decision.remaining()));
+        response.setHeader("RateLimit-Reset", String.valueOf(decision.resetSeconds()));
+
+        if (!decision.allowed()) {
+            response.setHeader("Retry-After", String.valueOf(decision.retryAfterSeconds()));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Too many requests\",\"message\":\"Rate limit exceeded, retry after "
+                    + decision.retryAfterSeconds() + " s\"}");
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    // The client address; the first X-Forwarded-For entry only if the proxy in front is trusted.
+    private String clientIp(HttpServletRequest request)
+    {
+        if (trustForwardedFor) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                int comma = forwarded.indexOf(',');
+                return (comma < 0 ? forwarded : forwarded.substring(0, comma)).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    @PreDestroy
+    void close()
+    {
+        evictor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,156 @@
+package hu.uni.restlab.ratelimit;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket rate limiter with one bucket per key (client IP, username, ...).
+ *
+ * A bucket holds up to {@code capacity} tokens and is refilled continuously at
+ * {@code refillPerSecond}; every request takes one token. The bucket is stored as a
+ * single number, the time at which it will be full again (the "theoretical arrival
+ * time" of the generic cell rate algorithm, equivalent to a token bucket), and is
+ * updated with a compare-and-set, so requests never lock.
+ *
+ * The buckets are spread over independent stripes, each with its own bound, so
+ * concurrent requests rarely touch the same memory. A bucket that has become full
+ * again carries no information (a new bucket would be the same), so idle buckets
+ * are dropped without changing any limit; this keeps the memory bounded by the
+ * number of recently active keys.
+ */
+public class RateLimiter {
+
+    /**
+     * The outcome of a request.
+     *
+     * @param allowed true if the request may proceed
+     * @param limit the capacity of the bucket
+     * @param remaining the tokens left after this request
+     * @param resetSeconds the time until the bucket is full again
+     * @param retryAfterSeconds the time until the next request is allowed (0 if allowed)
+     */
+    public record Decision(boolean allowed, long limit, long remaining, long resetSeconds, long retryAfterSeconds) { }
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final long capacity;
+    private final long interval;      // nanoseconds per token
+    private final long burst;         // capacity * interval: how far ahead of now a bucket may be
+    private final int maxKeysPerStripe;
+    private final ConcurrentHashMap<String, AtomicLong>[] stripes;
+
+    /**
+     * @param capacity the maximum number of tokens (the allowed burst)
+     * @param refillPerSecond the tokens added per second (the sustained rate)
+     * @param stripes the number of stripes, rounded up to a power of two
+     * @param maxKeys the maximum number of buckets kept in memory
+     */
+    @SuppressWarnings("unchecked")
+    public RateLimiter(long capacity, double refillPerSecond, int stripes, int maxKeys)
+    {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("The capacity and the refill rate must be positive");
+        }
+        int n = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+
+        this.capacity = capacity;
+        this.interval = Math.max(1, (long) (NANOS_PER_SECOND / refillPerSecond));
+        this.burst = capacity * interval;
+        this.maxKeysPerStripe = Math.max(1, maxKeys / n);
+        this.stripes = new ConcurrentHashMap[n];
+        for (int i = 0; i < n; i++) {
+            this.stripes[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * Take a token from the bucket of the key.
+     *
+     * @param key the client the limit applies to
+     * @return whether the request is allowed, with the values of the RateLimit headers
+     */
+    public Decision tryAcquire(String key)
+    {
+        long now = System.nanoTime();
+        AtomicLong bucket = bucket(key, now);
+
+        while (true) {
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + interval;
+            long ahead = next - now;
+
+            if (ahead > burst) {
+                // Not enough tokens: the request would push the bucket past its capacity.
+                long wait = ahead - burst;
+                return new Decision(false, capacity, 0, seconds(fullAt - now), seconds(wait));
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return new Decision(true, capacity, (burst - ahead) / interval, seconds(ahead), 0);
+            }
+        }
+    }
+
+    /**
+     * Drop the buckets that are full again; they would be recreated identical.
+     */
+    public void evictIdle()
+    {
+        long now = System.nanoTime();
+        for (ConcurrentHashMap<String, AtomicLong> stripe : stripes) {
+            stripe.values().removeIf(bucket -> bucket.get() - now <= 0);
+        }
+    }
+
+    /**
+     * Returns the number of buckets in memory.
+     */
+    public int size()
+    {
+        int size = 0;
+        for (ConcurrentHashMap<String, AtomicLong> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private AtomicLong bucket(String key, long now)
+    {
+        ConcurrentHashMap<String, AtomicLong> stripe = stripes[spread(key.hashCode()) & (stripes.length - 1)];
+
+        AtomicLong bucket = stripe.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (stripe.size() >= maxKeysPerStripe) {
+            makeRoom(stripe, now);
+        }
+        // A new bucket is full: it will be "full again" right now.
+        return stripe.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    // Keeps a stripe bounded: drop its idle buckets, and if that is not enough, about a tenth of the rest.
+    private void makeRoom(ConcurrentHashMap<String, AtomicLong> stripe, long now)
+    {
+        stripe.values().removeIf(bucket -> bucket.get() - now <= 0);
+
+        int excess = stripe.size() - maxKeysPerStripe + Math.max(1, maxKeysPerStripe / 10);
+        Iterator<AtomicLong> it = stripe.values().iterator();
+        while (excess-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    // Mixes the high bits of the hash into the low bits used for the stripe index.
+    private static int spread(int h)
+    {
+        return h ^ (h >>> 16);
+    }
+
+    private static long seconds(long nanos)
+    {
+        return nanos <= 0 ? 0 : (nanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND;
+    }
+
+}
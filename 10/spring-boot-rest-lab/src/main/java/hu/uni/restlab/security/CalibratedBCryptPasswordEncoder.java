@@ -0,0 +1,98 @@
+package hu.uni.restlab.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Arrays;
+
+/**
+ * BCrypt password encoder with a work factor (strength) calibrated at startup.
+ *
+ * The strength is the highest one whose hashing still fits into the target time on this
+ * machine, within the configured bounds. Each step doubles the cost, so it is enough to
+ * measure one low strength and extrapolate. Existing hashes stay valid whatever their
+ * strength; {@link #upgradeEncoding} reports the hashes of another strength, so Spring
+ * Security rehashes the password at the next successful login.
+ */
+public class CalibratedBCryptPasswordEncoder implements PasswordEncoder {
+
+    private static final Logger log = LoggerFactory.getLogger(CalibratedBCryptPasswordEncoder.class);
+
+    private static final int PROBE_STRENGTH = 8;
+    private static final int PROBE_ROUNDS = 5;
+
+    private final int strength;
+    private final BCryptPasswordEncoder delegate;
+
+    /**
+     * Calibrates the strength.
+     *
+     * @param targetMillis the wanted time of one password check
+     * @param minStrength the lowest strength used, even on slow machines
+     * @param maxStrength the highest strength used, even on fast machines
+     */
+    public CalibratedBCryptPasswordEncoder(long targetMillis, int minStrength, int maxStrength)
+    {
+        this.strength = calibrate(targetMillis, minStrength, maxStrength);
+        this.delegate = new BCryptPasswordEncoder(strength);
+    }
+
+    /**
+     * Returns the calibrated strength.
+     */
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return delegate.matches(rawPassword, encodedPassword);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword)
+    {
+        // $2a$10$... : the strength is the two digits after the version
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6)) != strength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static int calibrate(long targetMillis, int minStrength, int maxStrength)
+    {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(PROBE_STRENGTH);
+        probe.encode("warm-up");
+
+        // Median of a few rounds, so a GC pause does not skew the result.
+        long[] nanos = new long[PROBE_ROUNDS];
+        for (int i = 0; i < nanos.length; i++) {
+            long start = System.nanoTime();
+            probe.encode("calibration");
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        double probeMillis = nanos[nanos.length / 2] / 1_000_000.0;
+
+        int strength = minStrength;
+        while (strength < maxStrength && probeMillis * Math.pow(2, strength + 1 - PROBE_STRENGTH) <= targetMillis) {
+            strength++;
+        }
+
+        log.info("BCrypt strength {} (about {} ms per password check, target {} ms)",
+                strength, Math.round(probeMillis * Math.pow(2, strength - PROBE_STRENGTH)), targetMillis);
+        return strength;
+    }
+
+}
@@ -0,0 +1,273 @@
+package hu.uni.restlab.security;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.provisioning.UserDetailsManager;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * The user accounts (username, BCrypt password hash, enabled flag, authorities),
+ * stored in a database table with the username as primary key.
+ *
+ * Nothing is loaded at startup, so the startup time does not depend on the number
+ * of accounts. The accounts looked up recently are kept in a bounded cache, so the
+ * accounts that log in or refresh their tokens often are found without a query.
+ * The cache holds immutable entries and every lookup returns a fresh UserDetails,
+ * since Spring Security erases the password of the returned object after a login.
+ *
+ * It also implements UserDetailsPasswordService, so a password hashed with an
+ * outdated BCrypt strength is rehashed at the next login.
+ */
+public class JdbcCredentialStore implements UserDetailsManager, UserDetailsPasswordService {
+
+    /**
+     * A cached account.
+     */
+    private record Entry(String username, String password, boolean enabled, List<GrantedAuthority> authorities) {
+
+        UserDetails toUserDetails()
+        {
+            return User.withUsername(username)
+                    .password(password)
+                    .disabled(!enabled)
+                    .authorities(authorities)
+                    .build();
+        }
+    }
+
+    /**
+     * An account without its password, for listing.
+     *
+     * @param username the username
+     * @param enabled false if the account may not log in
+     * @param authorities the granted authorities (e.g. ROLE_USER)
+     */
+    public record Account(String username, boolean enabled, List<String> authorities) { }
+
+    private static final RowMapper<Entry> ENTRY_MAPPER = (rs, rowNum) -> new Entry(
+            rs.getString("username"),
+            rs.getString("password"),
+            rs.getBoolean("enabled"),
+            parseAuthorities(rs.getString("authorities")));
+
+    private static final RowMapper<Account> ACCOUNT_MAPPER = (rs, rowNum) -> new Account(
+            rs.getString("username"),
+            rs.getBoolean("enabled"),
+            parseAuthorities(rs.getString("authorities")).stream().map(GrantedAuthority::getAuthority).toList());
+
+    private final JdbcTemplate jdbc;
+    private final int cacheSize;
+    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+    // Counts the changes of accounts, so a lookup racing with a change does not cache the old row.
+    private final AtomicLong changes = new AtomicLong();
+
+    /**
+     * @param jdbc the database of the accounts table (see schema.sql)
+     * @param cacheSize the maximum number of cached accounts
+     */
+    public JdbcCredentialStore(JdbcTemplate jdbc, int cacheSize)
+    {
+        this.jdbc = jdbc;
+        this.cacheSize = cacheSize;
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException
+    {
+        Entry entry = cache.get(username);
+        if (entry == null) {
+            long changesBefore = changes.get();
+            List<Entry> rows = jdbc.query(
+                    "SELECT username, password, enabled, authorities FROM accounts WHERE username = ?",
+                    ENTRY_MAPPER, username);
+            if (rows.isEmpty()) {
+                throw new UsernameNotFoundException(username);
+            }
+            entry = rows.get(0);
+
+            if (cache.size() >= cacheSize) {
+                makeRoom();
+            }
+            cache.put(username, entry);
+            if (changes.get() != changesBefore) {
+                cache.remove(username, entry);
+            }
+        }
+        return entry.toUserDetails();
+    }
+
+    @Override
+    public boolean userExists(String username)
+    {
+        if (cache.containsKey(username)) {
+            return true;
+        }
+        Integer count = jdbc.queryForObject("SELECT COUNT(*) FROM accounts WHERE username = ?", Integer.class, username);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Create an account.
+     *
+     * @param user the account, with an already encoded password
+     * @throws IllegalStateException if the username is taken
+     */
+    @Override
+    public void createUser(UserDetails user)
+    {
+        try {
+            jdbc.update("INSERT INTO accounts (username, password, enabled, authorities) VALUES (?, ?, ?, ?)",
+                    user.getUsername(), user.getPassword(), user.isEnabled(), joinAuthorities(user));
+        } catch (DuplicateKeyException e) {
+            throw new IllegalStateException("The username is taken: " + user.getUsername(), e);
+        }
+    }
+
+    /**
+     * Replace an account (password, enabled flag and authorities).
+     *
+     * @param user the account, with an already encoded password
+     * @throws UsernameNotFoundException if there is no such account
+     */
+    @Override
+    public void updateUser(UserDetails user)
+    {
+        int updated = jdbc.update("UPDATE accounts SET password = ?, enabled = ?, authorities = ? WHERE username = ?",
+                user.getPassword(), user.isEnabled(), joinAuthorities(user), user.getUsername());
+        invalidate(user.getUsername());
+        if (updated == 0) {
+            throw new UsernameNotFoundException(user.getUsername());
+        }
+    }
+
+    @Override
+    public void deleteUser(String username)
+    {
+        delete(username);
+    }
+
+    /**
+     * Change the password of the current user.
+     *
+     * @param oldPassword not checked here; the caller is already authenticated
+     * @param newPassword the new, already encoded password
+     */
+    @Override
+    public void changePassword(String oldPassword, String newPassword)
+    {
+        Authentication current = SecurityContextHolder.getContext().getAuthentication();
+        if (current == null) {
+            throw new IllegalStateException("No authenticated user to change the password of");
+        }
+        setPassword(current.getName(), newPassword);
+    }
+
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword)
+    {
+        setPassword(user.getUsername(), newPassword);
+        return User.withUserDetails(user).password(newPassword).build();
+    }
+
+    /**
+     * Delete an account.
+     *
+     * @return true if the account existed
+     */
+    public boolean delete(String username)
+    {
+        int deleted = jdbc.update("DELETE FROM accounts WHERE username = ?", username);
+        invalidate(username);
+        return deleted > 0;
+    }
+
+    /**
+     * List the accounts in username order, one page at a time (keyset pagination).
+     *
+     * @param after the last username of the previous page, null for the first page
+     * @param limit the page size
+     * @return the accounts after the given username
+     */
+    public List<Account> list(String after, int limit)
+    {
+        return jdbc.query(
+                "SELECT username, enabled, authorities FROM accounts WHERE username > ? ORDER BY username LIMIT ?",
+                ACCOUNT_MAPPER, after != null ? after : "", limit);
+    }
+
+    /**
+     * Find an account without its password.
+     *
+     * @return the account, or null if there is no such account
+     */
+    public Account find(String username)
+    {
+        List<Account> rows = jdbc.query(
+                "SELECT username, enabled, authorities FROM accounts WHERE username = ?", ACCOUNT_MAPPER, username);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Returns the number of accounts.
+     */
+    public long count()
+    {
+        Long count = jdbc.queryForObject("SELECT COUNT(*) FROM accounts", Long.class);
+        return count != null ? count : 0;
+    }
+
+    private void setPassword(String username, String encodedPassword)
+    {
+        int updated = jdbc.update("UPDATE accounts SET password = ? WHERE username = ?", encodedPassword, username);
+        invalidate(username);
+        if (updated == 0) {
+            throw new UsernameNotFoundException(username);
+        }
+    }
+
+    private void invalidate(String username)
+    {
+        changes.incrementAndGet();
+        cache.remove(username);
+    }
+
+    // Keeps the cache bounded: drops about a tenth of the entries.
+    private void makeRoom()
+    {
+        int excess = cache.size() - cacheSize + Math.max(1, cacheSize / 10);
+        Iterator<String> it = cache.keySet().iterator();
+        while (excess-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static String joinAuthorities(UserDetails user)
+    {
+        return user.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.joining(","));
+    }
+
+    private static List<GrantedAuthority> parseAuthorities(String authorities)
+    {
+        return authorities == null || authorities.isBlank()
+                ? List.of()
+                : List.copyOf(AuthorityUtils.commaSeparatedStringToAuthorityList(authorities));
+    }
+
+}
@@ -0,0 +1,89 @@
+package hu.uni.restlab.security;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A bounded executor for the password checks.
+ *
+ * BCrypt is slow on purpose, so a burst of logins running on the web server's worker
+ * threads would leave no thread for the other requests. The logins run here instead,
+ * on a few dedicated threads with a bounded queue: the worker thread is released while
+ * the password is checked, and when the queue is full the login is rejected at once
+ * (503 with Retry-After) instead of piling up.
+ */
+@Component
+public class LoginBulkhead {
+
+    /**
+     * Thrown when the login queue is full.
+     */
+    public static class RejectedException extends RuntimeException {
+
+        private final long retryAfterSeconds;
+
+        RejectedException(long retryAfterSeconds) {
+            super("Too many concurrent logins, try again later");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        /**
+         * Returns the suggested wait before retrying, in seconds.
+         */
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final long retryAfterSeconds;
+
+    public LoginBulkhead(@Value("${login.threads:2}") int threads,
+                         @Value("${login.queue-capacity:64}") int queueCapacity,
+                         @Value("${login.retry-after-seconds:1}") long retryAfterSeconds)
+    {
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "login-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Run a login on the login threads.
+     *
+     * @param login the login (password check and token generation)
+     * @return the result of the login, completed on a login thread
+     * @throws RejectedException if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> login)
+    {
+        try {
+            return CompletableFuture.supplyAsync(login, executor);
+        } catch (RejectedExecutionException e) {
+            throw new RejectedException(retryAfterSeconds);
+        }
+    }
+
+    @PreDestroy
+    void close()
+    {
+        executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,102 @@
+package hu.uni.restlab.service;
+
+import hu.uni.restlab.dto.UserResponse;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service class for managing the users.
+ *
+ * It holds the in-memory user store shared by the REST controller and the
+ * WebSocket channel, so both see the same users.
+ */
+@Service
+public class UserService {
+
+    // For demo purposes the users are stored in-memory store by using HashMap.
+    // Note: a real application would persist them in a database.
+    private final Map<Long, UserResponse> users = new ConcurrentHashMap<>();
+
+    // AtomicLong provides a simple thread-safe id generator.
+    // Note: normally the database would manage identifiers.
+    private final AtomicLong idSeq = new AtomicLong(0);
+
+    /**
+     * Constructor seeds the in-memory store with a few demo users.
+     */
+    public UserService()
+    {
+        // Populate the map with demo data.
+        createUser("Alice", "alice@example.com");
+        createUser("Bob", "bob@example.com");
+    }
+
+    /**
+     * Returns all users sorted by id.
+     */
+    public List<UserResponse> findAllUsers()
+    {
+        // Note: in real life this would be done via a database query.
+        return users.values().stream()
+                .sorted(Comparator.comparingLong(UserResponse::id))
+                .toList();
+    }
+
+    /**
+     * Finds a user by id.
+     *
+     * @param id the user's id
+     * @return the user, or empty if there is none
+     */
+    public Optional<UserResponse> findUserById(long id)
+    {
+        return Optional.ofNullable(users.get(id));
+    }
+
+    /**
+     * Creates a new user.
+     *
+     * @param name the user's name
+     * @param email the user's email address
+     * @return the created user with its new id
+     */
+    public UserResponse createUser(String name, String email)
+    {
+        // Generate a new id and construct the user.
+        long id = idSeq.incrementAndGet();
+        UserResponse created = new UserResponse(id, name, email);
+        // Store the user in the map.
+        users.put(id, created);
+        return created;
+    }
+
+    /**
+     * Updates an existing user.
+     *
+     * @param id the user's id
+     * @param name the new name
+     * @param email the new email address
+     * @return the updated user, or empty if there is none
+     */
+    public Optional<UserResponse> updateUser(long id, String name, String email)
+    {
+        // Replace the user only if it exists (a deleted user is never resurrected).
+        return Optional.ofNullable(users.computeIfPresent(id, (key, existing) -> new UserResponse(id, name, email)));
+    }
+
+    /**
+     * Deletes a user.
+     *
+     * @param id the user's id
+     * @return true if the user was deleted, false if there was none
+     */
+    public boolean deleteUser(long id)
+    {
+        // Remove the user from the map; remove returns the old value or null if missing.
+        return users.remove(id) != null;
+    }
+
+}
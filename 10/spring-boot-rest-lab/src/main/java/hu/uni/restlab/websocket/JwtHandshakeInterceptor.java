@@ -0,0 +1,79 @@
+package hu.uni.restlab.websocket;
+
+import hu.uni.restlab.jwt.JwtVerificationCache;
+import hu.uni.restlab.jwt.TokenRevocationStore;
+import hu.uni.restlab.jwt.VerifiedToken;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * Authenticates a WebSocket connection once, at the handshake.
+ *
+ * The JWT token is taken from the Authorization header ("Bearer ...") or, for
+ * browsers that cannot set headers on a WebSocket, from the access_token query
+ * parameter. It is verified like in the JWT filter (verification cache, revocation
+ * list); a connection without a valid token is refused with 401. The verified token
+ * is kept with the session, the messages are not authenticated one by one.
+ */
+@Component
+public class JwtHandshakeInterceptor implements HandshakeInterceptor {
+
+    /**
+     * The session attribute holding the VerifiedToken of the connection.
+     */
+    public static final String TOKEN_ATTRIBUTE = "jwt";
+
+    private final JwtVerificationCache verificationCache;
+    private final TokenRevocationStore revocationStore;
+
+    public JwtHandshakeInterceptor(JwtVerificationCache verificationCache, TokenRevocationStore revocationStore) {
+        this.verificationCache = verificationCache;
+        this.revocationStore = revocationStore;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request,
+                                   ServerHttpResponse response,
+                                   WebSocketHandler wsHandler,
+                                   Map<String, Object> attributes)
+    {
+        String token = extractToken(request);
+        VerifiedToken verified = token != null ? verificationCache.verify(token) : null;
+
+        if (verified == null || revocationStore.isRevoked(verified.tokenId())) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+
+        attributes.put(TOKEN_ATTRIBUTE, verified);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request,
+                               ServerHttpResponse response,
+                               WebSocketHandler wsHandler,
+                               Exception exception)
+    {
+        // Nothing to do.
+    }
+
+    // The token of the Authorization header, or else of the access_token query parameter.
+    private static String extractToken(ServerHttpRequest request)
+    {
+        String authHeader = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+        return UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("access_token");
+    }
+
+}
@@ -0,0 +1,239 @@
+package hu.uni.restlab.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hu.uni.restlab.dto.UserCommand;
+import hu.uni.restlab.dto.UserCommandResult;
+import hu.uni.restlab.dto.UserCreateRequest;
+import hu.uni.restlab.jwt.JwtVerificationCache;
+import hu.uni.restlab.jwt.TokenRevocationStore;
+import hu.uni.restlab.jwt.VerifiedToken;
+import hu.uni.restlab.service.UserService;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * User CRUD over a persistent WebSocket connection.
+ *
+ * The client sends JSON commands ({"id": "1", "op": "create", "name": ..., "email": ...})
+ * without waiting for the previous results; every result carries the id of its command.
+ * The commands of a connection are executed in the order they arrive, directly on the
+ * thread that read them (they are short in-memory operations), and the results are
+ * written as soon as they are ready.
+ *
+ * The connection was authenticated at the handshake (see JwtHandshakeInterceptor).
+ * Per command only the expiry, the signing key and the revocation of that token are
+ * checked (a time comparison, a key ring lookup and a Bloom filter test), and the roles
+ * are the same as for the REST API: reading needs USER or ADMIN, changing needs ADMIN.
+ * Before the token expires the client sends a new one with an "auth" command; an expired
+ * or revoked token, or one signed with a key removed from the key ring, closes the connection.
+ *
+ * Writes go through a ConcurrentWebSocketSessionDecorator: a client that does not read
+ * its results is disconnected once its send buffer or send time limit is exceeded.
+ */
+@Component
+public class UserSocketHandler extends TextWebSocketHandler {
+
+    private static final CloseStatus TOKEN_EXPIRED = CloseStatus.POLICY_VIOLATION.withReason("Token expired or revoked");
+
+    private static final Set<String> READ_ROLES = Set.of("ROLE_USER", "ROLE_ADMIN");
+    private static final Set<String> WRITE_ROLES = Set.of("ROLE_ADMIN");
+
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final JwtVerificationCache verificationCache;
+    private final TokenRevocationStore revocationStore;
+    private final int sendTimeLimitMillis;
+    private final int sendBufferBytes;
+
+    // The thread-safe, bounded writers of the open connections, by session id.
+    private final Map<String, WebSocketSession> writers = new ConcurrentHashMap<>();
+
+    public UserSocketHandler(UserService userService,
+                             ObjectMapper objectMapper,
+                             Validator validator,
+                             JwtVerificationCache verificationCache,
+                             TokenRevocationStore revocationStore,
+                             @Value("${websocket.send-time-limit-ms:10000}") int sendTimeLimitMillis,
+                             @Value("${websocket.send-buffer-bytes:1048576}") int sendBufferBytes)
+    {
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.verificationCache = verificationCache;
+        this.revocationStore = revocationStore;
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.sendBufferBytes = sendBufferBytes;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session)
+    {
+        writers.put(session.getId(), new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMillis, sendBufferBytes));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException
+    {
+        WebSocketSession writer = writers.getOrDefault(session.getId(), session);
+
+        VerifiedToken token = (VerifiedToken) session.getAttributes().get(JwtHandshakeInterceptor.TOKEN_ATTRIBUTE);
+        if (!isValid(token)) {
+            writer.close(TOKEN_EXPIRED);
+            return;
+        }
+
+        UserCommandResult result;
+        try {
+            UserCommand command = objectMapper.readValue(message.getPayload(), UserCommand.class);
+            result = execute(session, token, command);
+        } catch (JsonProcessingException e) {
+            result = UserCommandResult.failed(null, null, 400, "Malformed command: " + e.getOriginalMessage(), null);
+        }
+
+        writer.sendMessage(new TextMessage(objectMapper.writeValueAsString(result)));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status)
+    {
+        writers.remove(session.getId());
+    }
+
+    /**
+     * Returns the number of open connections.
+     */
+    public int size()
+    {
+        return writers.size();
+    }
+
+    // Executes one command with the roles of the connection's token.
+    private UserCommandResult execute(WebSocketSession session, VerifiedToken token, UserCommand command)
+    {
+        String id = command.id();
+        String op = command.op() == null ? "" : command.op().toLowerCase(Locale.ROOT);
+
+        if (op.equals("auth")) {
+            return renewToken(session, token, command);
+        }
+
+        boolean write = !op.equals("list") && !op.equals("get");
+        if (!op.isEmpty() && !hasAnyRole(token, write ? WRITE_ROLES : READ_ROLES)) {
+            return UserCommandResult.failed(id, op, 403, "Access denied", null);
+        }
+
+        switch (op) {
+            case "list":
+                return UserCommandResult.list(id, op, userService.findAllUsers());
+
+            case "get":
+                if (command.userId() == null) {
+                    return UserCommandResult.failed(id, op, 400, "userId is required", null);
+                }
+                return userService.findUserById(command.userId())
+                        .map(user -> UserCommandResult.ok(id, op, 200, user))
+                        .orElse(UserCommandResult.failed(id, op, 404, "User not found", null));
+
+            case "create": {
+                UserCommandResult invalid = validate(id, op, command);
+                if (invalid != null) {
+                    return invalid;
+                }
+                return UserCommandResult.ok(id, op, 201, userService.createUser(command.name(), command.email()));
+            }
+
+            case "update": {
+                if (command.userId() == null) {
+                    return UserCommandResult.failed(id, op, 400, "userId is required", null);
+                }
+                UserCommandResult invalid = validate(id, op, command);
+                if (invalid != null) {
+                    return invalid;
+                }
+                return userService.updateUser(command.userId(), command.name(), command.email())
+                        .map(user -> UserCommandResult.ok(id, op, 200, user))
+                        .orElse(UserCommandResult.failed(id, op, 404, "User not found", null));
+            }
+
+            case "delete":
+                if (command.userId() == null) {
+                    return UserCommandResult.failed(id, op, 400, "userId is required", null);
+                }
+                return userService.deleteUser(command.userId())
+                        ? UserCommandResult.ok(id, op, 204, null)
+                        : UserCommandResult.failed(id, op, 404, "User not found", null);
+
+            default:
+                return UserCommandResult.failed(id, op, 400, "Unknown op, expected list, get, create, update, delete or auth", null);
+        }
+    }
+
+    // Replaces the token of the connection with a newer one of the same user.
+    private UserCommandResult renewToken(WebSocketSession session, VerifiedToken current, UserCommand command)
+    {
+        VerifiedToken renewed = command.token() != null ? verificationCache.verify(command.token()) : null;
+
+        if (!isValid(renewed)) {
+            return UserCommandResult.failed(command.id(), "auth", 401, "Invalid or expired token", null);
+        }
+        if (!renewed.username().equals(current.username())) {
+            return UserCommandResult.failed(command.id(), "auth", 403, "The token belongs to another user", null);
+        }
+
+        session.getAttributes().put(JwtHandshakeInterceptor.TOKEN_ATTRIBUTE, renewed);
+        return UserCommandResult.ok(command.id(), "auth", 204, null);
+    }
+
+    // Validates the name and email with the constraints of the REST request.
+    private UserCommandResult validate(String id, String op, UserCommand command)
+    {
+        Set<ConstraintViolation<UserCreateRequest>> violations =
+                validator.validate(new UserCreateRequest(command.name(), command.email()));
+        if (violations.isEmpty()) {
+            return null;
+        }
+
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (ConstraintViolation<UserCreateRequest> violation : violations) {
+            fields.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        return UserCommandResult.failed(id, op, 400, "Validation failed", fields);
+    }
+
+    // A token is usable until it expires, its signing key leaves the key ring or it is revoked,
+    // the same checks as for a REST request; all are cheap.
+    private boolean isValid(VerifiedToken token)
+    {
+        return token != null
+                && verificationCache.isUsable(token)
+                && !revocationStore.isRevoked(token.tokenId());
+    }
+
+    private static boolean hasAnyRole(VerifiedToken token, Set<String> roles)
+    {
+        for (GrantedAuthority authority : token.authorities()) {
+            if (roles.contains(authority.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
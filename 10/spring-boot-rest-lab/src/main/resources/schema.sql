@@ -0,0 +1,8 @@
+-- User accounts for the login (see JdbcCredentialStore).
+-- The username is the primary key, so a login looks up a single row through its index.
+CREATE TABLE IF NOT EXISTS accounts (
+    username    VARCHAR(100) NOT NULL PRIMARY KEY,
+    password    VARCHAR(100) NOT NULL,              -- BCrypt hash
+    enabled     BOOLEAN      NOT NULL DEFAULT TRUE,
+    authorities VARCHAR(500) NOT NULL DEFAULT ''    -- comma separated, e.g. ROLE_USER,ROLE_ADMIN
+);